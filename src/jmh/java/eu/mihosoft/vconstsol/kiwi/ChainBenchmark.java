@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds and removes the chain of constraints {@code v[i] == v[i - 1] + 100}
+ * used by {@code Benchmarks}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainBenchmark {
+
+    @Param({"100", "1000", "3000"})
+    int length;
+
+    List<Constraint> constraints;
+
+    SolverTemplate template;
+
+    /**
+     * A solver that contains the chain (for the removal benchmarks).
+     */
+    @State(Scope.Thread)
+    public static class PopulatedSolver {
+        Solver solver;
+
+        @Setup(Level.Invocation)
+        public void createSolver(ChainBenchmark chain) {
+            solver = new Solver();
+            solver.addConstraints(chain.constraints);
+        }
+    }
+
+    /**
+     * Creates the constraints of a chain of the given variables, the first
+     * one is fixed at 100.
+     */
+    static List<Constraint> chain(Variable[] variables) {
+        List<Constraint> constraints = new ArrayList<>(variables.length);
+
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = new Variable("v" + i);
+            if (i == 0) {
+                constraints.add(Symbolics.equals(variables[i], 100));
+            } else {
+                constraints.add(Symbolics.equals(variables[i], Symbolics.add(variables[i - 1], 100)));
+            }
+        }
+
+        return constraints;
+    }
+
+    @Setup(Level.Trial)
+    public void createConstraints() {
+        constraints = chain(new Variable[length]);
+
+        Solver solver = new Solver();
+        solver.addConstraints(constraints);
+        template = SolverTemplate.compile(solver);
+    }
+
+    @Benchmark
+    public Solver addConstraint() throws DuplicateConstraintException, UnsatisfiableConstraintException {
+        Solver solver = new Solver();
+        for (Constraint constraint : constraints) {
+            solver.addConstraint(constraint);
+        }
+        solver.updateVariables();
+        return solver;
+    }
+
+    @Benchmark
+    public Solver addConstraints() {
+        Solver solver = new Solver();
+        solver.addConstraints(constraints);
+        solver.updateVariables();
+        return solver;
+    }
+
+    @Benchmark
+    public Solver instantiateTemplate() {
+        return template.instantiate();
+    }
+
+    @Benchmark
+    public Solver removeConstraint(PopulatedSolver populated) throws UnknownConstraintException {
+        for (Constraint constraint : constraints) {
+            populated.solver.removeConstraint(constraint);
+        }
+        return populated.solver;
+    }
+
+    @Benchmark
+    public Solver removeConstraints(PopulatedSolver populated) {
+        populated.solver.removeConstraints(constraints);
+        return populated.solver;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drags the first variable of a chain of constraints with an edit
+ * variable, like an interactive layout does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EditBenchmark {
+
+    private static final int STEPS = 100;
+
+    @Param({"100", "1000"})
+    int length;
+
+    Solver solver;
+    Variable dragged;
+    double position;
+
+    @Setup(Level.Trial)
+    public void createSolver() throws DuplicateConstraintException, UnsatisfiableConstraintException, DuplicateEditVariableException, RequiredFailureException {
+        Variable[] variables = new Variable[length];
+        List<Constraint> constraints = ChainBenchmark.chain(variables);
+
+        solver = new Solver();
+        // the first constraint fixes the chain, the edit variable replaces it
+        for (Constraint constraint : constraints.subList(1, constraints.size())) {
+            solver.addConstraint(constraint);
+        }
+
+        dragged = variables[0];
+        solver.addEditVariable(dragged, Strength.STRONG);
+        solver.updateVariables();
+    }
+
+    /**
+     * A single step of a drag: suggest a value and update the variables.
+     */
+    @Benchmark
+    public List<Variable> suggestValue() throws UnknownEditVariableException {
+        position = position < 1000 ? position + 1 : 0;
+        solver.suggestValue(dragged, position);
+        return solver.updateVariables();
+    }
+
+    /**
+     * A complete drag: add the edit variable, move it and remove it again.
+     */
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public Solver dragSession() throws DuplicateEditVariableException, RequiredFailureException, UnknownEditVariableException {
+        solver.removeEditVariable(dragged);
+        solver.addEditVariable(dragged, Strength.STRONG);
+        for (int i = 0; i < STEPS; i++) {
+            solver.suggestValue(dragged, i);
+            solver.updateVariables();
+        }
+        return solver;
+    }
+}
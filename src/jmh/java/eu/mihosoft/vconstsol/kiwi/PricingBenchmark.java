@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link PricingRule}s on the synthetic {@link Workload}s (the
+ * grid is the thumbnail layout of {@link RealWorldTests}). Each invocation
+ * adds and removes the constraints one by one. Besides the time, the
+ * primal pivots per invocation are reported as the secondary result
+ * {@code pivots}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    @Param({"FIRST_NEGATIVE", "DANTZIG", "STEEPEST_EDGE", "BLAND"})
+    PricingRule rule;
+
+    @Param({"CHAIN", "GRID", "SPARSE", "COMPETING", "DRAG"})
+    Workload.Shape shape;
+
+    @Param({"100"})
+    int size;
+
+    Workload workload;
+
+    /**
+     * Counts the primal pivots of the invocations of an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Pivots {
+        private long total;
+        private long invocations;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            total = 0;
+            invocations = 0;
+        }
+
+        void add(long pivots) {
+            total += pivots;
+            invocations++;
+        }
+
+        /**
+         * Returns the average number of pivots per invocation.
+         */
+        public double pivots() {
+            return invocations == 0 ? 0 : (double) total / invocations;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void createWorkload() {
+        workload = shape.create(size, 42);
+    }
+
+    @Benchmark
+    public Solver addRemove(Pivots pivots) throws DuplicateConstraintException, UnsatisfiableConstraintException, UnknownConstraintException {
+        Solver solver = new Solver();
+        solver.setPricingRule(rule);
+        solver.setStatsEnabled(true);
+
+        for (Constraint constraint : workload.getConstraints()) {
+            solver.addConstraint(constraint);
+        }
+        for (Constraint constraint : workload.getConstraints()) {
+            solver.removeConstraint(constraint);
+        }
+
+        pivots.add(solver.getStats().getPrimalPivots());
+        return solver;
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures how the solver scales with the size of the synthetic
+ * {@link Workload}s and writes a machine-readable report.
+ * <p/>
+ * For each shape and size, the constraints are added one by one, the edit
+ * variables are dragged and the constraints are removed again. The report
+ * contains the time, pivots and allocated bytes per operation of each of
+ * these phases (best of several runs after warming up).
+ * <p/>
+ * Options (all optional):
+ * <pre>
+ * --shapes chain,grid,sparse,competing,drag
+ * --sizes 100,200,400,800
+ * --seed 42
+ * --warmup 2
+ * --runs 3
+ * --format csv|json
+ * --out report.csv (standard output by default)
+ * </pre>
+ */
+public class ScalingReport {
+
+    /**
+     * The measurements of one phase.
+     */
+    static class Result {
+        String shape;
+        int size;
+        long seed;
+        String operation;
+        int constraints;
+        int variables;
+        long count;
+        long nanos;
+        long pivots;
+        long bytes;
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final List<Result> results = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        List<Workload.Shape> shapes = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        long seed = 42;
+        int warmup = 2;
+        int runs = 3;
+        String format = "csv";
+        Path out = null;
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value of " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--shapes":
+                    for (String shape : value.split(",")) {
+                        shapes.add(Workload.Shape.valueOf(shape.trim().toUpperCase(Locale.ROOT)));
+                    }
+                    break;
+                case "--sizes":
+                    for (String size : value.split(",")) {
+                        sizes.add(Integer.parseInt(size.trim()));
+                    }
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(value);
+                    break;
+                case "--format":
+                    format = value;
+                    break;
+                case "--out":
+                    out = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        if (shapes.isEmpty()) {
+            for (Workload.Shape shape : Workload.Shape.values()) {
+                shapes.add(shape);
+            }
+        }
+        if (sizes.isEmpty()) {
+            for (int size = 100; size <= 800; size *= 2) {
+                sizes.add(size);
+            }
+        }
+
+        ScalingReport report = new ScalingReport();
+        for (Workload.Shape shape : shapes) {
+            for (int size : sizes) {
+                report.measure(shape.create(size, seed), warmup, runs);
+            }
+        }
+
+        if (out == null) {
+            report.write(new PrintWriter(System.out), format);
+        } else {
+            if (out.getParent() != null) {
+                Files.createDirectories(out.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+                report.write(new PrintWriter(writer), format);
+            }
+        }
+    }
+
+    /**
+     * Runs the given workload and records the best run of each phase.
+     */
+    void measure(Workload workload, int warmup, int runs) throws KiwiException, UnknownEditVariableException {
+        Result[] best = null;
+        for (int run = 0; run < warmup + runs; run++) {
+            Result[] phases = run(workload);
+            if (run >= warmup) {
+                if (best == null) {
+                    best = phases;
+                } else {
+                    for (int i = 0; i < phases.length; i++) {
+                        if (phases[i].nanos < best[i].nanos) {
+                            best[i] = phases[i];
+                        }
+                    }
+                }
+            }
+        }
+        for (Result result : best) {
+            results.add(result);
+        }
+    }
+
+    private Result[] run(Workload workload) throws KiwiException, UnknownEditVariableException {
+        Solver solver = new Solver();
+        // the sequential solver is measured
+        solver.setForkJoinPool(null);
+        solver.setStatsEnabled(true);
+
+        List<Constraint> constraints = workload.getConstraints();
+        Variable[] editVariables = workload.getEditVariables();
+        double[][] suggestions = workload.getSuggestions();
+
+        Result add = start(workload, solver, "addConstraint", constraints.size());
+        for (Constraint constraint : constraints) {
+            solver.addConstraint(constraint);
+        }
+        solver.updateVariables();
+        stop(add, solver);
+
+        for (Variable variable : editVariables) {
+            solver.addEditVariable(variable, Strength.STRONG);
+        }
+
+        Result drag = start(workload, solver, "suggestValues", suggestions.length);
+        for (double[] values : suggestions) {
+            solver.suggestValues(editVariables, values);
+        }
+        stop(drag, solver);
+
+        for (Variable variable : editVariables) {
+            solver.removeEditVariable(variable);
+        }
+
+        Result remove = start(workload, solver, "removeConstraint", constraints.size());
+        for (Constraint constraint : constraints) {
+            solver.removeConstraint(constraint);
+        }
+        solver.updateVariables();
+        stop(remove, solver);
+
+        return new Result[]{add, drag, remove};
+    }
+
+    private static Result start(Workload workload, Solver solver, String operation, long count) {
+        Result result = new Result();
+        result.shape = workload.getShape().name().toLowerCase(Locale.ROOT);
+        result.size = workload.getSize();
+        result.seed = workload.getSeed();
+        result.operation = operation;
+        result.constraints = workload.getConstraints().size();
+        result.variables = workload.getVariables().size();
+        result.count = count;
+        result.pivots = solver.getStats().getPivots();
+        result.bytes = allocatedBytes();
+        result.nanos = System.nanoTime();
+        return result;
+    }
+
+    private static void stop(Result result, Solver solver) {
+        result.nanos = System.nanoTime() - result.nanos;
+        result.bytes = allocatedBytes() - result.bytes;
+        result.pivots = solver.getStats().getPivots() - result.pivots;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread so far or zero if
+     * the JVM cannot measure them.
+     */
+    private static long allocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    void write(PrintWriter writer, String format) {
+        if ("json".equals(format)) {
+            writeJson(writer);
+        } else if ("csv".equals(format)) {
+            writeCsv(writer);
+        } else {
+            throw new IllegalArgumentException("unknown format " + format);
+        }
+        writer.flush();
+    }
+
+    private void writeCsv(PrintWriter writer) {
+        writer.println("shape,size,seed,operation,constraints,variables,count,nanos,nanosPerOp,pivotsPerOp,bytesPerOp");
+        for (Result r : results) {
+            writer.println(String.format(Locale.ROOT, "%s,%d,%d,%s,%d,%d,%d,%d,%.1f,%.3f,%.1f",
+                    r.shape, r.size, r.seed, r.operation, r.constraints, r.variables, r.count, r.nanos,
+                    perOperation(r, r.nanos), perOperation(r, r.pivots), perOperation(r, r.bytes)));
+        }
+    }
+
+    private void writeJson(PrintWriter writer) {
+        writer.println("[");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            writer.print(String.format(Locale.ROOT,
+                    "  {\"shape\": \"%s\", \"size\": %d, \"seed\": %d, \"operation\": \"%s\", "
+                            + "\"constraints\": %d, \"variables\": %d, \"count\": %d, \"nanos\": %d, "
+                            + "\"nanosPerOp\": %.1f, \"pivotsPerOp\": %.3f, \"bytesPerOp\": %.1f}",
+                    r.shape, r.size, r.seed, r.operation, r.constraints, r.variables, r.count, r.nanos,
+                    perOperation(r, r.nanos), perOperation(r, r.pivots), perOperation(r, r.bytes)));
+            writer.println(i + 1 < results.size() ? "," : "");
+        }
+        writer.println("]");
+    }
+
+    private static double perOperation(Result result, long total) {
+        return result.count == 0 ? 0 : (double) total / result.count;
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A reproducible synthetic workload for the solver: constraints, edit
+ * variables and the values suggested for them in each step of a drag.
+ * <p/>
+ * Workloads are created by {@link Shape#create(int, long)}. The same shape,
+ * size and seed always yield the same workload.
+ */
+public class Workload {
+
+    /**
+     * The shapes of the generated constraint systems.
+     */
+    public enum Shape {
+
+        /**
+         * A chain {@code v[i] == v[i - 1] + 100} like the one of
+         * {@code Benchmarks}, dragged at its first variable.
+         */
+        CHAIN {
+            @Override
+            void generate(Workload workload, int size, Random random) {
+                Variable[] variables = workload.variables(size);
+                workload.add(Symbolics.equals(variables[0], 100).setStrength(Strength.WEAK));
+                for (int i = 1; i < size; i++) {
+                    workload.add(Symbolics.equals(variables[i], Symbolics.add(variables[i - 1], 100)));
+                }
+                workload.drag(random, variables[0]);
+            }
+        },
+
+        /**
+         * The thumbnail grid of {@code RealWorldTests} scaled to the given
+         * number of items, dragged at the width of the container.
+         */
+        GRID {
+            @Override
+            void generate(Workload workload, int size, Random random) {
+                int columns = Math.max(1, (int) Math.ceil(Math.sqrt(size)));
+                Variable width = workload.variable("container.width");
+                Variable columnWidth = workload.variable("container.columnWidth");
+                Variable thumbHeight = workload.variable("container.thumbHeight");
+                double padding = 10;
+
+                workload.add(Symbolics.equals(width, 300 * columns).setStrength(Strength.WEAK));
+                // width == columns * columnWidth + (columns + 1) * padding
+                workload.add(Symbolics.equals(width,
+                        Symbolics.add(Symbolics.multiply(columnWidth, columns), (columns + 1) * padding)));
+                workload.add(Symbolics.equals(thumbHeight, Symbolics.divide(columnWidth, 2)));
+
+                Variable[] lefts = new Variable[size];
+                Variable[] tops = new Variable[size];
+                Variable[] heights = new Variable[size];
+                for (int i = 0; i < size; i++) {
+                    lefts[i] = workload.variable("item" + i + ".left");
+                    tops[i] = workload.variable("item" + i + ".top");
+                    heights[i] = workload.variable("item" + i + ".height");
+
+                    int row = i / columns;
+                    int column = i % columns;
+
+                    // the items have a random intrinsic height below the thumbnail
+                    workload.add(Symbolics.equals(heights[i], Symbolics.add(thumbHeight, 20 + random.nextInt(100))));
+
+                    if (column == 0) {
+                        workload.add(Symbolics.equals(lefts[i], padding));
+                    } else {
+                        workload.add(Symbolics.equals(lefts[i],
+                                Symbolics.add(Symbolics.add(lefts[i - 1], columnWidth), padding)));
+                    }
+
+                    if (row == 0) {
+                        workload.add(Symbolics.equals(tops[i], padding));
+                    } else {
+                        // below all items of the previous row, as close as possible
+                        for (int above = (row - 1) * columns; above < row * columns; above++) {
+                            Expression bottom = Symbolics.add(Symbolics.add(tops[above], heights[above]), padding);
+                            workload.add(Symbolics.greaterThanOrEqualTo(tops[i], bottom));
+                            workload.add(Symbolics.equals(tops[i], bottom).setStrength(Strength.WEAK));
+                        }
+                    }
+                }
+
+                workload.drag(random, width);
+            }
+        },
+
+        /**
+         * A random sparse system of inequalities with a few terms each,
+         * which is feasible by construction.
+         */
+        SPARSE {
+            private static final int NEIGHBORHOOD = 8;
+
+            @Override
+            void generate(Workload workload, int size, Random random) {
+                Variable[] variables = workload.variables(size);
+                double[] solution = new double[size];
+                for (int i = 0; i < size; i++) {
+                    solution[i] = random.nextInt(1000);
+                    workload.add(Symbolics.greaterThanOrEqualTo(variables[i], 0));
+                    workload.add(Symbolics.lessThanOrEqualTo(variables[i], 1000));
+                }
+
+                for (int k = 0; k < size; k++) {
+                    Expression expression = new Expression();
+                    double value = 0;
+                    // the terms are close to each other like in a layout
+                    int first = random.nextInt(Math.max(1, size - NEIGHBORHOOD));
+                    for (int t = 0, terms = 2 + random.nextInt(2); t < terms; t++) {
+                        int i = Math.min(size - 1, first + random.nextInt(NEIGHBORHOOD));
+                        double coefficient = random.nextBoolean() ? 1 + random.nextInt(2) : -1 - random.nextInt(2);
+                        expression = Symbolics.add(expression, Symbolics.multiply(variables[i], coefficient));
+                        value += coefficient * solution[i];
+                    }
+                    // the solution satisfies the required constraints with some slack
+                    double bound = value + random.nextInt(50);
+                    double strength = random.nextInt(4) == 0 ? Strength.REQUIRED : randomStrength(random);
+                    workload.add(Symbolics.lessThanOrEqualTo(expression, bound).setStrength(strength));
+                }
+
+                workload.drag(random, variables[random.nextInt(size)]);
+            }
+        },
+
+        /**
+         * Variables that are pulled towards several targets by weak,
+         * medium and strong constraints and limited by their neighbors.
+         */
+        COMPETING {
+            @Override
+            void generate(Workload workload, int size, Random random) {
+                Variable[] variables = workload.variables(size);
+                for (int i = 0; i < size; i++) {
+                    for (int k = 0; k < 3; k++) {
+                        workload.add(Symbolics.equals(variables[i], random.nextInt(1000)).setStrength(randomStrength(random)));
+                    }
+                    if (i > 0) {
+                        workload.add(Symbolics.lessThanOrEqualTo(Symbolics.add(variables[i - 1], variables[i]), 1000));
+                    }
+                }
+
+                workload.drag(random, variables[0], variables[size / 2]);
+            }
+        },
+
+        /**
+         * A row of items that keep a minimum distance to each other, many of
+         * which are dragged at the same time.
+         */
+        DRAG {
+            @Override
+            void generate(Workload workload, int size, Random random) {
+                Variable[] variables = workload.variables(size);
+                for (int i = 0; i < size; i++) {
+                    workload.add(Symbolics.equals(variables[i], 20 * i).setStrength(Strength.WEAK));
+                    if (i > 0) {
+                        workload.add(Symbolics.greaterThanOrEqualTo(variables[i], Symbolics.add(variables[i - 1], 10)));
+                    }
+                }
+
+                Variable[] dragged = new Variable[Math.min(size, 16)];
+                for (int i = 0; i < dragged.length; i++) {
+                    dragged[i] = variables[i * size / dragged.length];
+                }
+                workload.drag(random, dragged);
+            }
+        };
+
+        /**
+         * Creates a workload of this shape with the given size (number of
+         * items or variables).
+         */
+        public Workload create(int size, long seed) {
+            Workload workload = new Workload(this, size, seed);
+            generate(workload, size, new Random(seed));
+            return workload;
+        }
+
+        abstract void generate(Workload workload, int size, Random random);
+
+        private static double randomStrength(Random random) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    return Strength.WEAK;
+                case 1:
+                    return Strength.MEDIUM;
+                default:
+                    return Strength.STRONG;
+            }
+        }
+    }
+
+    /**
+     * The number of steps of each drag.
+     */
+    public static final int DRAG_STEPS = 100;
+
+    private final Shape shape;
+    private final int size;
+    private final long seed;
+
+    private final List<Variable> variables = new ArrayList<>();
+    private final List<Constraint> constraints = new ArrayList<>();
+    private Variable[] editVariables = new Variable[0];
+    private double[][] suggestions = new double[0][];
+
+    private Workload(Shape shape, int size, long seed) {
+        this.shape = shape;
+        this.size = size;
+        this.seed = seed;
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public List<Variable> getVariables() {
+        return variables;
+    }
+
+    public List<Constraint> getConstraints() {
+        return constraints;
+    }
+
+    public Variable[] getEditVariables() {
+        return editVariables;
+    }
+
+    /**
+     * Returns the values suggested for the edit variables in each step of
+     * the drag.
+     */
+    public double[][] getSuggestions() {
+        return suggestions;
+    }
+
+    private Variable variable(String name) {
+        Variable variable = new Variable(name);
+        variables.add(variable);
+        return variable;
+    }
+
+    private Variable[] variables(int count) {
+        Variable[] result = new Variable[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = variable("v" + i);
+        }
+        return result;
+    }
+
+    private void add(Constraint constraint) {
+        constraints.add(constraint);
+    }
+
+    /**
+     * Drags the given variables along random walks.
+     */
+    private void drag(Random random, Variable... dragged) {
+        editVariables = dragged;
+        suggestions = new double[DRAG_STEPS][dragged.length];
+
+        double[] position = new double[dragged.length];
+        for (int i = 0; i < dragged.length; i++) {
+            position[i] = random.nextInt(1000);
+        }
+        for (int step = 0; step < DRAG_STEPS; step++) {
+            for (int i = 0; i < dragged.length; i++) {
+                position[i] += random.nextInt(21) - 10;
+                suggestions[step][i] = position[i];
+            }
+        }
+    }
+}
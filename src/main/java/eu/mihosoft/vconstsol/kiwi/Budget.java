@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the work of solver operations, e.g., to the time of a frame.
+ * <p/>
+ * A budget limits the number of pivots and/or the time until a deadline.
+ * It can be cancelled from any thread with {@link #cancel()}, and the
+ * operations that use it stop if the calling thread is interrupted. When
+ * the budget is exhausted, the operation stops at the next pivot and
+ * leaves the solver in a consistent state: all constraints are in the
+ * tableau, but the solution may not be optimal and may even violate
+ * constraints whose suggested values have not been optimized yet. The
+ * stopped work is resumed by the next operation of the solver or by
+ * {@link Solver#resume(Budget)}.
+ * <p/>
+ * A budget may be shared by several operations, the pivots of all of them
+ * count against the limit.
+ */
+public final class Budget {
+
+    private final long maxPivots;
+    private final long deadline;
+    private final boolean hasDeadline;
+
+    private final AtomicLong pivots = new AtomicLong();
+    private volatile boolean cancelled;
+    private volatile boolean exhausted;
+
+    private Budget(long maxPivots, long timeout, TimeUnit unit) {
+        if (maxPivots < 0) {
+            throw new IllegalArgumentException("max pivots must not be negative: " + maxPivots);
+        }
+        this.maxPivots = maxPivots;
+        this.hasDeadline = unit != null;
+        this.deadline = hasDeadline ? System.nanoTime() + unit.toNanos(timeout) : 0;
+    }
+
+    /**
+     * Returns a budget that is only limited by cancellation and
+     * interruption.
+     */
+    public static Budget unlimited() {
+        return new Budget(Long.MAX_VALUE, 0, null);
+    }
+
+    /**
+     * Returns a budget of the given number of pivots.
+     */
+    public static Budget ofPivots(long maxPivots) {
+        return new Budget(maxPivots, 0, null);
+    }
+
+    /**
+     * Returns a budget that expires after the given time from now.
+     */
+    public static Budget ofTime(long timeout, TimeUnit unit) {
+        return new Budget(Long.MAX_VALUE, timeout, unit);
+    }
+
+    /**
+     * Returns a budget of the given number of pivots that expires after
+     * the given time from now.
+     */
+    public static Budget of(long maxPivots, long timeout, TimeUnit unit) {
+        return new Budget(maxPivots, timeout, unit);
+    }
+
+    /**
+     * Cancels the operations that use this budget.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Indicates whether an operation has been stopped because this budget
+     * has been exhausted, cancelled or interrupted.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Returns the number of pivots performed with this budget.
+     */
+    public long getPivots() {
+        return pivots.get();
+    }
+
+    /**
+     * Reserves a pivot.
+     *
+     * @param caller the thread that called the operation
+     * @return false if the pivot must not be performed
+     */
+    boolean tryPivot(Thread caller) {
+        if (exhausted) {
+            return false;
+        }
+        if (cancelled || caller.isInterrupted()
+                || (hasDeadline && System.nanoTime() - deadline >= 0)
+                || pivots.incrementAndGet() > maxPivots) {
+            exhausted = true;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.util.Arrays;
+
+/**
+ * Reverse index of the tableau which maps each symbol to the basic rows
+ * that contain it.
+ * <p/>
+ * Rows keep track of their position in the columns of their cells (see
+ * {@link Row#attach(Symbol, ColumnIndex)}), which allows constant time
+ * updates when a cell is inserted into or removed from a basic row.
+ * <p/>
+ * The columns of a forked solver are shared with the solver it has been
+ * forked from until they are modified (see {@link #fork(Solver)}).
+ */
+final class ColumnIndex {
+
+    private static final int INITIAL_COLUMN_CAPACITY = 4;
+
+    private final Solver solver;
+
+    private Row[][] columns;
+    private int[] sizes;
+
+    /**
+     * Flags the columns that are shared with another column index and must
+     * be copied before they are modified.
+     */
+    private boolean[] shared;
+
+    ColumnIndex(Solver solver, int capacity) {
+        this.solver = solver;
+        this.columns = new Row[capacity][];
+        this.sizes = new int[capacity];
+        this.shared = new boolean[capacity];
+    }
+
+    private ColumnIndex(Solver solver, ColumnIndex other) {
+        this.solver = solver;
+        this.columns = other.columns.clone();
+        this.sizes = other.sizes.clone();
+        this.shared = new boolean[columns.length];
+        Arrays.fill(shared, true);
+    }
+
+    /**
+     * Returns a copy of this column index for the given solver which
+     * shares the columns with this index.
+     * <p/>
+     * This index must not be used anymore once it has been forked, the
+     * solver it belongs to has to use a fork as well.
+     */
+    ColumnIndex fork(Solver solver) {
+        return new ColumnIndex(solver, this);
+    }
+
+    /**
+     * Makes sure that symbols with ids below the given capacity can be
+     * indexed.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > columns.length) {
+            int newCapacity = Math.max(capacity, columns.length * 2);
+            columns = Arrays.copyOf(columns, newCapacity);
+            sizes = Arrays.copyOf(sizes, newCapacity);
+            shared = Arrays.copyOf(shared, newCapacity);
+        }
+    }
+
+    /**
+     * Removes all rows from the columns of the symbols with ids below the
+     * given count. Columns that are not shared keep their capacity.
+     */
+    void clear(int count) {
+        for (int id = 0; id < count; id++) {
+            if (shared[id]) {
+                columns[id] = null;
+                shared[id] = false;
+            } else if (columns[id] != null) {
+                Arrays.fill(columns[id], 0, sizes[id], null);
+            }
+            sizes[id] = 0;
+        }
+    }
+
+    /**
+     * Returns the number of basic rows that contain the given symbol.
+     */
+    int size(Symbol symbol) {
+        return sizes[symbol.getId()];
+    }
+
+    /**
+     * Returns the i-th basic row that contains the given symbol.
+     */
+    Row rowAt(Symbol symbol, int i) {
+        return columns[symbol.getId()][i];
+    }
+
+    /**
+     * Adds a row to the column of the given symbol.
+     *
+     * @return the position of the row in the column
+     */
+    int add(Symbol symbol, Row row) {
+        int id = symbol.getId();
+        Row[] column = columns[id];
+        int size = sizes[id];
+
+        if (column == null) {
+            column = columns[id] = new Row[INITIAL_COLUMN_CAPACITY];
+            shared[id] = false;
+        } else if (size == column.length) {
+            column = columns[id] = Arrays.copyOf(column, size * 2);
+            shared[id] = false;
+        } else {
+            column = writableColumn(id);
+        }
+
+        column[size] = row;
+        sizes[id] = size + 1;
+
+        return size;
+    }
+
+    /**
+     * Replaces the row at the given position in the column of the given
+     * symbol.
+     */
+    void set(Symbol symbol, int position, Row row) {
+        writableColumn(symbol.getId())[position] = row;
+    }
+
+    /**
+     * Removes the row at the given position from the column of the given
+     * symbol. The last row of the column takes its place.
+     */
+    void remove(Symbol symbol, int position) {
+        int id = symbol.getId();
+        int last = sizes[id] - 1;
+
+        if (position != last) {
+            // the moved row is updated, so it must not be shared
+            Row moved = solver.own(columns[id][last]);
+            writableColumn(id)[position] = moved;
+            moved.setColumnPosition(symbol, position);
+        }
+
+        writableColumn(id)[last] = null;
+        sizes[id] = last;
+    }
+
+    private Row[] writableColumn(int id) {
+        if (shared[id]) {
+            columns[id] = columns[id].clone();
+            shared[id] = false;
+        }
+        return columns[id];
+    }
+}
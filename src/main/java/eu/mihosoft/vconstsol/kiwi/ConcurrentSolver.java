@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Thread-safe facade of a {@link Solver} with a single writer and any number
+ * of readers.
+ * <p/>
+ * Modifications of the solver are queued and applied by a dedicated writer
+ * thread in the order they have been submitted. Modifications that are
+ * queued at the same time are applied as one batch, i.e., suggested values
+ * are optimized only once per batch. After each batch, the writer publishes
+ * an immutable {@link Snapshot} of the values of all variables. Readers
+ * obtain the latest snapshot with {@link #snapshot()} without locking and
+ * always see a consistent solution.
+ * <p/>
+ * If the optimization of a batch fails, its changes remain applied and the
+ * next batch continues from them. The futures of the applied modifications
+ * fail with an {@link UnoptimizedChangeException} and the published
+ * snapshot is marked as not optimized (see {@link Snapshot#isOptimized()}).
+ * <p/>
+ * The values of the {@link Variable} objects are not updated by this
+ * facade. Readers query the values from a snapshot instead.
+ */
+public final class ConcurrentSolver implements AutoCloseable {
+
+    /**
+     * A modification of the solver applied by the writer thread.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface Modification<T> {
+        T apply(Solver solver) throws Exception;
+    }
+
+    /**
+     * Immutable snapshot of the values of the variables of a solver.
+     */
+    public static final class Snapshot {
+
+        private final long version;
+        private final boolean optimized;
+        private final Variable[] variables;
+        private final double[] values;
+        private final int size;
+
+        /**
+         * Indices of variables whose index field belongs to another solver.
+         */
+        private final Map<Variable, Integer> sharedVariables;
+
+        private Snapshot(long version, boolean optimized, Variable[] variables, double[] values, int size, Map<Variable, Integer> sharedVariables) {
+            this.version = version;
+            this.optimized = optimized;
+            this.variables = variables;
+            this.values = values;
+            this.size = size;
+            this.sharedVariables = sharedVariables;
+        }
+
+        /**
+         * Returns the version of this snapshot. Each published snapshot has
+         * a greater version than its predecessor.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Indicates whether the optimization of the batch of this snapshot
+         * has succeeded. Otherwise the values reflect the applied changes,
+         * but are not necessarily optimal or feasible.
+         */
+        public boolean isOptimized() {
+            return optimized;
+        }
+
+        /**
+         * Returns the value of the given variable.
+         *
+         * @param variable the variable
+         * @return the value of the variable or zero if the variable is not
+         * part of any constraint of the solver
+         */
+        public double valueOf(Variable variable) {
+            int index = variable.index;
+            if (index < 0 || index >= size || variables[index] != variable) {
+                Integer shared = sharedVariables.get(variable);
+                if (shared == null) {
+                    return 0;
+                }
+                index = shared;
+            }
+            return values[index];
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(0, true, new Variable[0], new double[0], 0, Collections.<Variable, Integer>emptyMap());
+
+    private final class Task<T> {
+        final Modification<T> modification;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        Throwable failure;
+
+        /**
+         * Whether the modification has been applied without failure.
+         */
+        boolean applied;
+
+        Task(Modification<T> modification) {
+            this.modification = modification;
+        }
+
+        void apply() {
+            try {
+                result = modification.apply(solver);
+                applied = true;
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        void complete(Throwable batchFailure) {
+            if (failure == null && batchFailure != null) {
+                failure = applied ? new UnoptimizedChangeException(batchFailure) : batchFailure;
+            }
+            if (failure == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private final Solver solver;
+    private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    private volatile Snapshot snapshot = EMPTY;
+
+    /**
+     * The reset count of the solver when the last snapshot was published
+     * (only accessed by the writer thread).
+     */
+    private int resets;
+    private volatile boolean closed;
+
+    /**
+     * Creates a facade of a new solver.
+     */
+    public ConcurrentSolver() {
+        this(new Solver());
+    }
+
+    /**
+     * Creates a facade of the given solver. The solver must not be used
+     * directly anymore.
+     *
+     * @param solver the solver
+     */
+    public ConcurrentSolver(Solver solver) {
+        this.solver = solver;
+        // the snapshots look up variables by their index
+        this.solver.share();
+        this.writer = new Thread(this::write, "kiwi-solver-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+
+        // publishes the initial solution of the given solver
+        submit(s -> null);
+    }
+
+    /**
+     * Returns the latest published snapshot.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Queues a modification of the solver.
+     *
+     * @param modification the modification, which is applied by the writer
+     * thread
+     * @return a future that is completed with the result of the modification
+     * once a snapshot that reflects the modification has been published
+     * @throws IllegalStateException if this facade has been closed
+     */
+    public <T> CompletableFuture<T> submit(Modification<T> modification) {
+        if (closed) {
+            throw new IllegalStateException("solver has been closed");
+        }
+        Task<T> task = new Task<>(modification);
+        queue.add(task);
+        if (closed && queue.remove(task)) {
+            // the writer might have stopped before the task has been queued
+            task.future.completeExceptionally(new CancellationException("solver has been closed"));
+        }
+        return task.future;
+    }
+
+    public CompletableFuture<Void> addConstraint(Constraint constraint) {
+        return submit(s -> {
+            s.addConstraint(constraint);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> removeConstraint(Constraint constraint) {
+        return submit(s -> {
+            s.removeConstraint(constraint);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> addEditVariable(Variable variable, double strength) {
+        return submit(s -> {
+            s.addEditVariable(variable, strength);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> removeEditVariable(Variable variable) {
+        return submit(s -> {
+            s.removeEditVariable(variable);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> suggestValue(Variable variable, double value) {
+        return submit(s -> {
+            s.suggestValue(variable, value);
+            return null;
+        });
+    }
+
+    /**
+     * Stops the writer thread. Modifications that have not been applied yet
+     * are cancelled.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+    }
+
+    private void write() {
+        List<Task<?>> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                Throwable failure = null;
+                try {
+                    solver.beginEdit();
+                    for (Task<?> task : batch) {
+                        task.apply();
+                    }
+                    solver.endEdit();
+                } catch (Throwable t) {
+                    failure = t;
+                } finally {
+                    // the applied changes remain in the solver even if the
+                    // optimization has failed
+                    try {
+                        publish(failure == null);
+                    } catch (Throwable t) {
+                        if (failure == null) {
+                            failure = t;
+                        }
+                    }
+                }
+
+                for (Task<?> task : batch) {
+                    task.complete(failure);
+                }
+                batch.clear();
+
+                if (closed) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+
+        queue.drainTo(batch);
+        for (Task<?> task : batch) {
+            task.future.completeExceptionally(new CancellationException("solver has been closed"));
+        }
+    }
+
+    private void publish(boolean optimized) {
+        Snapshot previous = snapshot;
+        int size = solver.getVariableCount();
+
+        Variable[] variables = previous.variables;
+        Map<Variable, Integer> sharedVariables = previous.sharedVariables;
+        int known = previous.size;
+        if (solver.getResetCount() != resets) {
+            // the variables are only removed by a reset of the solver
+            resets = solver.getResetCount();
+            variables = EMPTY.variables;
+            sharedVariables = EMPTY.sharedVariables;
+            known = 0;
+        }
+        if (size != known) {
+            // only the variables added since the last snapshot have to be
+            // checked
+            Map<Variable, Integer> sharedBefore = sharedVariables;
+            variables = Arrays.copyOf(variables, size);
+            for (int i = known; i < size; i++) {
+                Variable variable = solver.getVariable(i);
+                variables[i] = variable;
+                if (!solver.ownsIndex(variable, i)) {
+                    if (sharedVariables == sharedBefore) {
+                        sharedVariables = new HashMap<>(sharedVariables);
+                    }
+                    sharedVariables.put(variable, i);
+                }
+            }
+        }
+
+        double[] values = new double[size];
+        solver.copyValues(values);
+
+        snapshot = new Snapshot(previous.version + 1, optimized, variables, values, size, sharedVariables);
+    }
+}
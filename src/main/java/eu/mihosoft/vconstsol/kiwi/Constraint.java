@@ -29,14 +29,27 @@
  */
 package eu.mihosoft.vconstsol.kiwi;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by alex on 30/01/15.
+ * <p/>
+ * The expression of a constraint is stored packed: its variables and their
+ * coefficients in two arrays (one entry per variable) and its constant
+ * inline. The arrays are never modified, so constraints created from each
+ * other with a different strength share them.
  */
 public class Constraint {
 
-    private Expression expression;
+    /**
+     * The variables and coefficients of the reduced expression (null if the
+     * constraint has no expression).
+     */
+    private Variable[] variables;
+    private double[] coefficients;
+    private double constant;
+
     private double strength;
     private RelationalOperator op;
 
@@ -48,41 +61,89 @@ public class Constraint {
     }
 
     public Constraint(Expression expr, RelationalOperator op, double strength) {
-        this.expression = reduce(expr);
+        setExpression(expr);
         this.op = op;
         this.strength = Strength.clip(strength);
     }
 
     public Constraint(Constraint other, double strength) {
-        this(other.expression, other.op, strength);
+        this.variables = other.variables;
+        this.coefficients = other.coefficients;
+        this.constant = other.constant;
+        this.op = other.op;
+        this.strength = Strength.clip(strength);
     }
 
-    private static Expression reduce(Expression expr){
+    /**
+     * Creates a constraint from the given terms, which must contain each
+     * variable only once. The arrays are taken over by the constraint.
+     */
+    Constraint(Variable[] variables, double[] coefficients, double constant, RelationalOperator op, double strength) {
+        this.variables = variables;
+        this.coefficients = coefficients;
+        this.constant = constant;
+        this.op = op;
+        this.strength = Strength.clip(strength);
+    }
 
-        Map<Variable, Double> vars = new LinkedHashMap<>();
-        for(Term term: expr.getTerms()){
-            Double value = vars.get(term.getVariable());
-            if(value == null){
-                value = 0.0;
-            }
-            value += term.coefficient;
-            vars.put(term.getVariable(), value);
+    /**
+     * Returns the expression of this constraint.
+     * <p/>
+     * The expression is created from the packed terms of this constraint,
+     * changing it does not change the constraint (see
+     * {@link #setExpression(Expression)}).
+     */
+    public Expression getExpression() {
+        if (variables == null) {
+            return null;
+        }
+        List<Term> terms = new ArrayList<>(variables.length);
+        for (int i = 0; i < variables.length; i++) {
+            terms.add(new Term(variables[i], coefficients[i]));
         }
+        return new Expression(terms, constant);
+    }
 
-        List<Term> reducedTerms = new ArrayList<>();
-        for(Variable variable: vars.keySet()){
-            reducedTerms.add(new Term(variable, vars.get(variable)));
+    public void setExpression(Expression expression) {
+        if (expression == null) {
+            variables = null;
+            coefficients = null;
+            constant = 0.0;
+            return;
         }
+        ExpressionBuilder builder = new ExpressionBuilder(expression.getTerms().size()).add(expression);
+        variables = builder.variables();
+        coefficients = builder.coefficients();
+        constant = builder.getConstant();
+    }
 
-        return new Expression(reducedTerms, expr.getConstant());
+    /**
+     * Returns the number of variables of the expression of this constraint.
+     */
+    public int getTermCount() {
+        return variables == null ? 0 : variables.length;
     }
 
-    public Expression getExpression() {
-        return expression;
+    /**
+     * Returns the i-th variable of the expression of this constraint.
+     */
+    public Variable getVariable(int i) {
+        return variables[i];
     }
 
-    public void setExpression(Expression expression) {
-        this.expression = expression;
+    /**
+     * Returns the coefficient of the i-th variable of the expression of
+     * this constraint.
+     */
+    public double getCoefficient(int i) {
+        return coefficients[i];
+    }
+
+    /**
+     * Returns the constant of the expression of this constraint.
+     */
+    public double getConstant() {
+        return constant;
     }
 
     public double getStrength() {
@@ -104,7 +165,7 @@ public class Constraint {
 
     @Override
     public String toString() {
-        return "expression: (" + expression + ") strength: " + strength + " operator: " + op;
+        return "expression: (" + getExpression() + ") strength: " + strength + " operator: " + op;
     }
 
 }
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Loads constraint files with one constraint per line (see
+ * {@link ConstraintParser} for the syntax). Empty lines and lines starting
+ * with {@code #} are ignored.
+ * <p/>
+ * The file is split into chunks at line boundaries, which are mapped into
+ * memory and parsed in parallel. The names of the variables are resolved
+ * by a {@link ConstraintParser.InterningResolver} unless another resolver
+ * is given, which then must be thread-safe.
+ */
+public class ConstraintLoader {
+
+    /**
+     * The minimum size of the chunks that are parsed in parallel (in bytes).
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The maximum size of a chunk, which must be mapped into memory as a
+     * whole.
+     */
+    private static final int MAX_CHUNK_SIZE = 1 << 28;
+
+    private final ConstraintParser.CassowaryVariableResolver resolver;
+
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    public ConstraintLoader() {
+        this(new ConstraintParser.InterningResolver());
+    }
+
+    public ConstraintLoader(ConstraintParser.CassowaryVariableResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    public ConstraintParser.CassowaryVariableResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * Sets the pool used to parse the chunks of a file in parallel. By
+     * default, the common pool is used.
+     *
+     * @param pool the pool or null to parse sequentially
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Parses the constraints of the given file and adds them to the given
+     * solver in one batch (see {@link Solver#addConstraints(java.util.Collection)}).
+     *
+     * @param file the constraint file
+     * @param solver the solver
+     * @return the constraints that could not be added mapped to the
+     * exception explaining why
+     * @throws IOException The file cannot be read.
+     * @throws IllegalArgumentException A line cannot be parsed.
+     */
+    public Map<Constraint, KiwiException> load(Path file, Solver solver) throws IOException {
+        return solver.addConstraints(parse(file));
+    }
+
+    /**
+     * Parses the constraints of the given file.
+     *
+     * @param file the constraint file
+     * @return the constraints in the order of the lines of the file
+     * @throws IOException The file cannot be read.
+     * @throws IllegalArgumentException A line cannot be parsed, the message
+     * contains the number of the line.
+     */
+    public List<Constraint> parse(Path file) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int parallelism = pool == null ? 1 : pool.getParallelism();
+            long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (4L * parallelism)));
+
+            long start = 0;
+            while (start < size) {
+                long end = endOfLine(channel, Math.min(size, start + chunkSize), start + MAX_CHUNK_SIZE);
+                chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+                start = end;
+            }
+        }
+
+        if (pool == null || chunks.size() < 2) {
+            for (Chunk chunk : chunks) {
+                chunk.parse(resolver);
+            }
+        } else {
+            pool.invoke(new ParseAction(chunks, 0, chunks.size(), resolver));
+        }
+
+        int constraintCount = 0;
+        int lineCount = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.error != null) {
+                throw new IllegalArgumentException(file + ":" + (lineCount + chunk.errorLine) + ": "
+                        + chunk.error.getMessage(), chunk.error);
+            }
+            constraintCount += chunk.constraints.size();
+            lineCount += chunk.lineCount;
+        }
+
+        List<Constraint> constraints = new ArrayList<>(constraintCount);
+        for (Chunk chunk : chunks) {
+            constraints.addAll(chunk.constraints);
+        }
+        return constraints;
+    }
+
+    /**
+     * Returns the position after the end of the line at the given position.
+     *
+     * @param limit the position at which a chunk must end
+     */
+    private static long endOfLine(FileChannel channel, long position, long limit) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+
+        while (position < size && position < limit) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return size;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+
+        if (position >= limit && position < size) {
+            throw new IOException("line longer than " + MAX_CHUNK_SIZE + " bytes");
+        }
+        return Math.min(position, size);
+    }
+
+    /**
+     * A part of the file that consists of complete lines.
+     */
+    private static class Chunk {
+        final MappedByteBuffer bytes;
+        List<Constraint> constraints = Collections.emptyList();
+        int lineCount;
+
+        /**
+         * The error of the first line that could not be parsed and its
+         * number within the chunk (if any).
+         */
+        RuntimeException error;
+        int errorLine;
+
+        Chunk(MappedByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        void parse(ConstraintParser.CassowaryVariableResolver resolver) {
+            // newlines never occur within UTF-8 sequences, so each chunk
+            // can be decoded on its own
+            CharBuffer text = StandardCharsets.UTF_8.decode(bytes);
+            char[] chars = text.array();
+            int end = text.arrayOffset() + text.limit();
+
+            constraints = new ArrayList<>();
+            int start = text.arrayOffset();
+            while (start < end) {
+                int lineEnd = start;
+                while (lineEnd < end && chars[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                lineCount++;
+
+                int from = start;
+                int to = lineEnd;
+                while (from < to && Character.isWhitespace(chars[from])) {
+                    from++;
+                }
+                while (to > from && Character.isWhitespace(chars[to - 1])) {
+                    to--;
+                }
+
+                if (from < to && chars[from] != '#') {
+                    try {
+                        constraints.add(ConstraintParser.parseConstraint(new String(chars, from, to - from), resolver));
+                    } catch (NonlinearExpressionException e) {
+                        error = new IllegalArgumentException("nonlinear expression", e);
+                        errorLine = lineCount;
+                        return;
+                    } catch (RuntimeException e) {
+                        error = e;
+                        errorLine = lineCount;
+                        return;
+                    }
+                }
+
+                start = lineEnd + 1;
+            }
+        }
+    }
+
+    private static class ParseAction extends RecursiveAction {
+        final List<Chunk> chunks;
+        final int from;
+        final int to;
+        final ConstraintParser.CassowaryVariableResolver resolver;
+
+        ParseAction(List<Chunk> chunks, int from, int to, ConstraintParser.CassowaryVariableResolver resolver) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.resolver = resolver;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                chunks.get(from).parse(resolver);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseAction(chunks, from, middle, resolver),
+                        new ParseAction(chunks, middle, to, resolver));
+            }
+        }
+    }
+}
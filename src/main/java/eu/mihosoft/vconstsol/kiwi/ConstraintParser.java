@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parses constraints like {@code "x == (y + 10) * 2 !strong"}.
+ * <p/>
+ * A constraint consists of two linear expressions separated by {@code ==},
+ * {@code <=} or {@code >=} (or {@code EQ}, {@code LEQ} and {@code GEQ})
+ * and an optional strength ({@code !required}, {@code !strong},
+ * {@code !medium} or {@code !weak}, required by default). Expressions
+ * consist of numbers, names, {@code + - * /} and parentheses. Names are
+ * resolved with {@link CassowaryVariableResolver#resolveConstant(String)}
+ * first and with {@link CassowaryVariableResolver#resolveVariable(String)}
+ * if they do not denote a constant.
+ * <p/>
+ * The parser reads the characters of the constraint once and collects the
+ * terms of the expressions directly, without tokens or intermediate
+ * expressions. The terms of each (sub)expression are the last terms
+ * collected so far, which allows to scale or negate them in place.
+ */
+public class ConstraintParser {
+
+    public interface CassowaryVariableResolver {
+
+        Variable resolveVariable(String variableName);
+        Expression resolveConstant(String name);
+    }
+
+    /**
+     * A resolver that creates one variable per name and resolves the
+     * constants defined with {@link #defineConstant(String, double)}. It
+     * may be used by several threads at once, e.g., by a
+     * {@link ConstraintLoader}.
+     */
+    public static class InterningResolver implements CassowaryVariableResolver {
+
+        private final ConcurrentMap<String, Variable> variables = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Expression> constants = new ConcurrentHashMap<>();
+
+        @Override
+        public Variable resolveVariable(String variableName) {
+            Variable variable = variables.get(variableName);
+            if (variable == null) {
+                variable = variables.computeIfAbsent(variableName, Variable::new);
+            }
+            return variable;
+        }
+
+        @Override
+        public Expression resolveConstant(String name) {
+            return constants.get(name);
+        }
+
+        /**
+         * Defines a named constant, which takes precedence over a variable
+         * with the same name.
+         */
+        public void defineConstant(String name, double value) {
+            constants.put(name, new Expression(value));
+        }
+
+        /**
+         * Returns the variables resolved so far by name.
+         */
+        public Map<String, Variable> getVariables() {
+            return Collections.unmodifiableMap(variables);
+        }
+    }
+
+    private final String input;
+    private final CassowaryVariableResolver resolver;
+    private int position;
+
+    private Variable[] variables = new Variable[8];
+    private double[] coefficients = new double[8];
+    private int size;
+
+    private ConstraintParser(String input, CassowaryVariableResolver resolver) {
+        this.input = input;
+        this.resolver = resolver;
+    }
+
+    public static Constraint parseConstraint(String constraintString, CassowaryVariableResolver variableResolver) throws NonlinearExpressionException {
+        return new ConstraintParser(constraintString, variableResolver).constraint();
+    }
+
+    public static Expression resolveExpression(String expressionString, CassowaryVariableResolver variableResolver) throws NonlinearExpressionException {
+        ConstraintParser parser = new ConstraintParser(expressionString, variableResolver);
+        double constant = parser.sum();
+        parser.expectEnd();
+        return parser.builder(constant).build();
+    }
+
+    private Constraint constraint() throws NonlinearExpressionException {
+        double constant = sum();
+        RelationalOperator operator = operator();
+
+        int right = size;
+        constant -= sum();
+        scale(right, -1.0);
+
+        double strength = strength();
+        expectEnd();
+
+        return builder(constant).buildConstraint(operator, strength);
+    }
+
+    /**
+     * Parses a sum of products and collects its terms.
+     *
+     * @return the constant of the sum
+     */
+    private double sum() throws NonlinearExpressionException {
+        double constant = product();
+        while (true) {
+            char c = next();
+            if (c == '+') {
+                position++;
+                constant += product();
+            } else if (c == '-') {
+                position++;
+                int from = size;
+                constant -= product();
+                scale(from, -1.0);
+            } else {
+                return constant;
+            }
+        }
+    }
+
+    /**
+     * Parses a product of factors, of which at most one may be
+     * non-constant, and collects its terms.
+     *
+     * @return the constant of the product
+     */
+    private double product() throws NonlinearExpressionException {
+        int start = size;
+        double constant = factor();
+        while (true) {
+            char c = next();
+            if (c == '*') {
+                position++;
+                int from = size;
+                double factor = factor();
+                if (from == start) {
+                    // the terms of the right factor take the place of the
+                    // constant left factor
+                    scale(from, constant);
+                } else if (size == from) {
+                    scale(start, factor);
+                } else {
+                    throw new NonlinearExpressionException();
+                }
+                constant *= factor;
+            } else if (c == '/') {
+                position++;
+                int from = size;
+                double denominator = factor();
+                if (size != from) {
+                    throw new NonlinearExpressionException();
+                }
+                scale(start, 1.0 / denominator);
+                constant *= 1.0 / denominator;
+            } else {
+                return constant;
+            }
+        }
+    }
+
+    /**
+     * Parses a signed number, name or parenthesized sum and collects its
+     * terms.
+     *
+     * @return the constant of the factor
+     */
+    private double factor() throws NonlinearExpressionException {
+        char c = next();
+        if (c == '-') {
+            position++;
+            int from = size;
+            double constant = -factor();
+            scale(from, -1.0);
+            return constant;
+        }
+        if (c == '+') {
+            position++;
+            return factor();
+        }
+        if (c == '(') {
+            position++;
+            double constant = sum();
+            if (next() != ')') {
+                throw error("expected ')'");
+            }
+            position++;
+            return constant;
+        }
+
+        int start = position;
+        String name = name();
+        if (name.isEmpty()) {
+            throw error("expected a number, name or '('");
+        }
+        if (isNumberStart(input.charAt(start))) {
+            // exponents like 1e-3 are split by the minus sign
+            if (position < input.length() && (input.charAt(position) == '-' || input.charAt(position) == '+')
+                    && (name.endsWith("e") || name.endsWith("E"))) {
+                position++;
+                name = input.substring(start, position) + name();
+            }
+            try {
+                return Double.parseDouble(name);
+            } catch (NumberFormatException e) {
+                // names like 2column are resolved below
+            }
+        }
+
+        Expression constant = resolver.resolveConstant(name);
+        if (constant != null) {
+            for (Term term : constant.getTerms()) {
+                add(term.getVariable(), term.getCoefficient());
+            }
+            return constant.getConstant();
+        }
+        add(resolver.resolveVariable(name), 1.0);
+        return 0.0;
+    }
+
+    private RelationalOperator operator() {
+        char c = next();
+        if (position + 1 < input.length() && input.charAt(position + 1) == '=') {
+            RelationalOperator operator = c == '=' ? RelationalOperator.OP_EQ
+                    : c == '<' ? RelationalOperator.OP_LE
+                    : c == '>' ? RelationalOperator.OP_GE : null;
+            if (operator != null) {
+                position += 2;
+                return operator;
+            }
+        }
+
+        String name = name();
+        if ("EQ".equals(name)) {
+            return RelationalOperator.OP_EQ;
+        } else if ("LEQ".equals(name)) {
+            return RelationalOperator.OP_LE;
+        } else if ("GEQ".equals(name)) {
+            return RelationalOperator.OP_GE;
+        }
+        throw error("expected '==', '<=' or '>='");
+    }
+
+    private double strength() {
+        if (next() != '!') {
+            return Strength.REQUIRED;
+        }
+        position++;
+
+        String name = name();
+        if ("required".equals(name)) {
+            return Strength.REQUIRED;
+        } else if ("strong".equals(name)) {
+            return Strength.STRONG;
+        } else if ("medium".equals(name)) {
+            return Strength.MEDIUM;
+        } else if ("weak".equals(name)) {
+            return Strength.WEAK;
+        }
+        throw error("unknown strength '" + name + "'");
+    }
+
+    private void expectEnd() {
+        if (next() != 0) {
+            throw error("unexpected '" + input.charAt(position) + "'");
+        }
+    }
+
+    /**
+     * Skips whitespace and returns the next character (0 at the end of the
+     * input) without consuming it.
+     */
+    private char next() {
+        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+        return position < input.length() ? input.charAt(position) : 0;
+    }
+
+    /**
+     * Reads the name or number at the current position.
+     */
+    private String name() {
+        next();
+        int start = position;
+        while (position < input.length() && isNameChar(input.charAt(position))) {
+            position++;
+        }
+        return input.substring(start, position);
+    }
+
+    private static boolean isNameChar(char c) {
+        switch (c) {
+            case '+':
+            case '-':
+            case '*':
+            case '/':
+            case '(':
+            case ')':
+            case '<':
+            case '>':
+            case '=':
+            case '!':
+                return false;
+            default:
+                return !Character.isWhitespace(c);
+        }
+    }
+
+    private static boolean isNumberStart(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+
+    private void add(Variable variable, double coefficient) {
+        if (size == variables.length) {
+            variables = Arrays.copyOf(variables, size * 2);
+            coefficients = Arrays.copyOf(coefficients, size * 2);
+        }
+        variables[size] = variable;
+        coefficients[size++] = coefficient;
+    }
+
+    /**
+     * Multiplies the terms collected since the given index.
+     */
+    private void scale(int from, double factor) {
+        for (int i = from; i < size; i++) {
+            coefficients[i] *= factor;
+        }
+    }
+
+    /**
+     * Returns a builder with the collected terms, which are reduced to one
+     * term per variable in the order of their first occurrence.
+     */
+    private ExpressionBuilder builder(double constant) {
+        ExpressionBuilder builder = new ExpressionBuilder(size);
+        for (int i = 0; i < size; i++) {
+            builder.add(variables[i], coefficients[i]);
+        }
+        return builder.add(constant);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("could not parse " + input + ": " + message + " at " + position);
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds linear expressions in place.
+ * <p/>
+ * Unlike chaining {@link Symbolics} calls, which copies all terms for each
+ * added term, the builder accumulates one coefficient per variable, so
+ * building a sum of n terms takes O(n) time. Duplicate variables are
+ * merged as they are added, hence the built expressions and constraints
+ * need not be reduced again. A builder can be reused after
+ * {@link #clear()}.
+ * <p/>
+ * Example:
+ * <pre>
+ * Constraint aligned = new ExpressionBuilder()
+ *         .add(left, 2).subtract(right).add(-10)
+ *         .buildConstraint(RelationalOperator.OP_EQ);
+ * </pre>
+ */
+public final class ExpressionBuilder {
+
+    private Variable[] variables;
+    private double[] coefficients;
+    private int size;
+    private double constant;
+
+    /**
+     * Open addressing table of the terms by variable identity, each slot
+     * holds the index of a term plus one (zero if the slot is free).
+     */
+    private int[] slots;
+
+    public ExpressionBuilder() {
+        this(8);
+    }
+
+    /**
+     * Creates a builder for the given number of terms.
+     */
+    public ExpressionBuilder(int expectedTerms) {
+        int capacity = Math.max(4, expectedTerms);
+        variables = new Variable[capacity];
+        coefficients = new double[capacity];
+        slots = new int[tableSize(capacity)];
+    }
+
+    public ExpressionBuilder add(Variable variable) {
+        return add(variable, 1.0);
+    }
+
+    public ExpressionBuilder add(Variable variable, double coefficient) {
+        int slot = slotOf(variable);
+        int index = slots[slot] - 1;
+        if (index >= 0) {
+            coefficients[index] += coefficient;
+            return this;
+        }
+
+        if (size == variables.length) {
+            variables = Arrays.copyOf(variables, size * 2);
+            coefficients = Arrays.copyOf(coefficients, size * 2);
+        }
+        variables[size] = variable;
+        coefficients[size] = coefficient;
+        slots[slot] = ++size;
+
+        if (2 * size > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return this;
+    }
+
+    public ExpressionBuilder add(Term term) {
+        return add(term.getVariable(), term.getCoefficient());
+    }
+
+    public ExpressionBuilder add(double constant) {
+        this.constant += constant;
+        return this;
+    }
+
+    public ExpressionBuilder add(Expression expression) {
+        return add(expression, 1.0);
+    }
+
+    /**
+     * Adds the given expression multiplied by the given factor.
+     */
+    public ExpressionBuilder add(Expression expression, double factor) {
+        List<Term> terms = expression.getTerms();
+        for (int i = 0, n = terms.size(); i < n; i++) {
+            Term term = terms.get(i);
+            add(term.getVariable(), term.getCoefficient() * factor);
+        }
+        constant += expression.getConstant() * factor;
+        return this;
+    }
+
+    public ExpressionBuilder subtract(Variable variable) {
+        return add(variable, -1.0);
+    }
+
+    public ExpressionBuilder subtract(Variable variable, double coefficient) {
+        return add(variable, -coefficient);
+    }
+
+    public ExpressionBuilder subtract(double constant) {
+        return add(-constant);
+    }
+
+    public ExpressionBuilder subtract(Expression expression) {
+        return add(expression, -1.0);
+    }
+
+    /**
+     * Multiplies all terms and the constant by the given factor.
+     */
+    public ExpressionBuilder multiply(double factor) {
+        for (int i = 0; i < size; i++) {
+            coefficients[i] *= factor;
+        }
+        constant *= factor;
+        return this;
+    }
+
+    public ExpressionBuilder divide(double denominator) {
+        return multiply(1.0 / denominator);
+    }
+
+    /**
+     * Returns the number of variables of the expression.
+     */
+    public int size() {
+        return size;
+    }
+
+    public double getConstant() {
+        return constant;
+    }
+
+    /**
+     * Returns the coefficient of the given variable (zero if the variable
+     * has not been added).
+     */
+    public double coefficientFor(Variable variable) {
+        int index = slots[slotOf(variable)] - 1;
+        return index < 0 ? 0.0 : coefficients[index];
+    }
+
+    /**
+     * Removes all terms and the constant so that the builder can be reused.
+     */
+    public ExpressionBuilder clear() {
+        if (size > 0) {
+            Arrays.fill(variables, 0, size, null);
+            Arrays.fill(slots, 0);
+            size = 0;
+        }
+        constant = 0.0;
+        return this;
+    }
+
+    /**
+     * Creates the expression with one term per variable, in the order the
+     * variables have been added first.
+     */
+    public Expression build() {
+        List<Term> terms = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            terms.add(new Term(variables[i], coefficients[i]));
+        }
+        return new Expression(terms, constant);
+    }
+
+    /**
+     * Creates the required constraint {@code expression op 0}.
+     */
+    public Constraint buildConstraint(RelationalOperator op) {
+        return buildConstraint(op, Strength.REQUIRED);
+    }
+
+    /**
+     * Creates the constraint {@code expression op 0} with the given strength.
+     * The terms are packed into the constraint without creating an
+     * {@link Expression}.
+     */
+    public Constraint buildConstraint(RelationalOperator op, double strength) {
+        return new Constraint(variables(), coefficients(), constant, op, strength);
+    }
+
+    /**
+     * Returns a copy of the variables of the terms.
+     */
+    Variable[] variables() {
+        return Arrays.copyOf(variables, size);
+    }
+
+    /**
+     * Returns a copy of the coefficients of the terms.
+     */
+    double[] coefficients() {
+        return Arrays.copyOf(coefficients, size);
+    }
+
+    private int slotOf(Variable variable) {
+        int mask = slots.length - 1;
+        int h = System.identityHashCode(variable);
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (true) {
+            int index = slots[slot] - 1;
+            if (index < 0 || variables[index] == variable) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehash(int tableSize) {
+        slots = new int[tableSize];
+        for (int i = 0; i < size; i++) {
+            slots[slotOf(variables[i])] = i + 1;
+        }
+    }
+
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+}
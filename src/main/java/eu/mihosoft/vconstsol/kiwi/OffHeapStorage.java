@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap memory for the rows of the tableau of very large constraint
+ * systems (see {@link Solver#setOffHeapStorage(OffHeapStorage)}).
+ * <p/>
+ * The coefficients of the rows, the positions of the rows in the columns
+ * of the tableau and the hash indices of the cells are stored in direct
+ * buffers, which are allocated in chunks. Only the symbols of the cells
+ * remain on the heap, so huge tableaus run with a small and stable heap.
+ * The memory of a row is recycled when the row grows or is garbage
+ * collected.
+ * <p/>
+ * Closing the storage releases all of its memory at once. The solvers
+ * that use the storage (including their forks) must not be used anymore
+ * afterwards and must not be running while the storage is closed. Their
+ * operations and any access to the cells of their rows throw an
+ * {@link IllegalStateException} once the storage has been closed, instead
+ * of touching the freed memory.
+ * <p/>
+ * A storage may be shared by several solvers, also from different threads.
+ */
+public final class OffHeapStorage implements AutoCloseable {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The bytes per cell of a row: the coefficient, the column position and
+     * two buckets of the index.
+     */
+    static final int CELL_BYTES = 8 + 4 + 2 * 4;
+
+    /**
+     * The memory of a row with a capacity of a power of two cells, which is
+     * recycled when the row is garbage collected.
+     */
+    static final class Block extends PhantomReference<Row> {
+        final OffHeapStorage storage;
+        ByteBuffer buffer;
+        int capacity;
+
+        /**
+         * The blocks of the storage that are still in use.
+         */
+        private Block previous;
+        private Block next;
+
+        private Block(Row row, OffHeapStorage storage) {
+            super(row, storage.collected);
+            this.storage = storage;
+        }
+    }
+
+    private final int chunkSize;
+
+    /**
+     * The direct buffers allocated by this storage (including the dedicated
+     * buffers of rows that do not fit into a chunk) and the chunk that
+     * blocks are currently allocated from.
+     */
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer chunk;
+
+    /**
+     * Released buffers indexed by the binary logarithm of their capacity.
+     */
+    private final List<ArrayDeque<ByteBuffer>> free = new ArrayList<>();
+
+    private final ReferenceQueue<Row> collected = new ReferenceQueue<>();
+    private Block blocks;
+
+    private long reservedBytes;
+    private long usedBytes;
+    private volatile boolean closed;
+
+    /**
+     * Creates a storage that allocates direct buffers of 1 MB.
+     */
+    public OffHeapStorage() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a storage that allocates direct buffers of the given size.
+     *
+     * @param chunkSize the size of the direct buffers in bytes
+     */
+    public OffHeapStorage(int chunkSize) {
+        if (chunkSize < CELL_BYTES) {
+            throw new IllegalArgumentException("chunk size must be at least " + CELL_BYTES + " bytes, got " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory allocated by this
+     * storage.
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Returns the number of bytes used by rows that have not been garbage
+     * collected yet.
+     */
+    public synchronized long getUsedBytes() {
+        reclaim();
+        return usedBytes;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Releases the memory of this storage. Calling this method more than once
+     * has no effect.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (ByteBuffer buffer : chunks) {
+            Unmapper.free(buffer);
+        }
+        chunks.clear();
+        chunk = null;
+        free.clear();
+        blocks = null;
+        reservedBytes = 0;
+        usedBytes = 0;
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if this storage has been
+     * closed.
+     */
+    void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("off-heap storage has been closed");
+        }
+    }
+
+    /**
+     * Allocates the memory of the given row for the given number of cells,
+     * which must be a power of two.
+     */
+    synchronized Block allocate(Row row, int capacity) {
+        ensureOpen();
+        reclaim();
+
+        Block block = new Block(row, this);
+        block.buffer = buffer(capacity);
+        block.capacity = capacity;
+
+        block.next = blocks;
+        if (blocks != null) {
+            blocks.previous = block;
+        }
+        blocks = block;
+
+        return block;
+    }
+
+    /**
+     * Replaces the memory of the given block with memory for the given
+     * number of cells, which must be a power of two. The content of the
+     * memory is not copied.
+     *
+     * @return the previous memory of the block, which must be released with
+     * {@link #release(ByteBuffer, int)} once it is not needed anymore
+     */
+    synchronized ByteBuffer resize(Block block, int capacity) {
+        ensureOpen();
+        ByteBuffer previous = block.buffer;
+        block.buffer = buffer(capacity);
+        block.capacity = capacity;
+        return previous;
+    }
+
+    /**
+     * Recycles the memory of a row with the given number of cells.
+     */
+    synchronized void release(ByteBuffer buffer, int capacity) {
+        if (closed) {
+            return;
+        }
+        int sizeClass = Integer.numberOfTrailingZeros(capacity);
+        while (free.size() <= sizeClass) {
+            free.add(new ArrayDeque<ByteBuffer>());
+        }
+        free.get(sizeClass).push(buffer);
+        usedBytes -= (long) capacity * CELL_BYTES;
+    }
+
+    private ByteBuffer buffer(int capacity) {
+        int bytes = capacity * CELL_BYTES;
+        usedBytes += bytes;
+
+        int sizeClass = Integer.numberOfTrailingZeros(capacity);
+        if (sizeClass < free.size() && !free.get(sizeClass).isEmpty()) {
+            return free.get(sizeClass).pop();
+        }
+
+        if (bytes > chunkSize) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            chunks.add(buffer);
+            reservedBytes += bytes;
+            return buffer;
+        }
+
+        if (chunk == null || chunk.remaining() < bytes) {
+            // the rest of the previous chunk is lost
+            chunk = ByteBuffer.allocateDirect(chunkSize);
+            chunks.add(chunk);
+            reservedBytes += chunkSize;
+        }
+
+        int position = chunk.position();
+        chunk.limit(position + bytes);
+        ByteBuffer buffer = chunk.slice().order(ByteOrder.nativeOrder());
+        chunk.limit(chunk.capacity());
+        chunk.position(position + bytes);
+        return buffer;
+    }
+
+    /**
+     * Recycles the memory of the rows that have been garbage collected.
+     */
+    private void reclaim() {
+        for (Block block = (Block) collected.poll(); block != null; block = (Block) collected.poll()) {
+            if (block.previous != null) {
+                block.previous.next = block.next;
+            } else if (blocks == block) {
+                blocks = block.next;
+            }
+            if (block.next != null) {
+                block.next.previous = block.previous;
+            }
+            block.previous = null;
+            block.next = null;
+            if (!closed) {
+                release(block.buffer, block.capacity);
+            }
+        }
+    }
+
+    /**
+     * Releases direct buffers without waiting for the garbage collector
+     * where the JVM supports it.
+     */
+    private static final class Unmapper {
+
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        static void free(ByteBuffer buffer) {
+            try {
+                if (INVOKE_CLEANER != null) {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                } else {
+                    // Java 8
+                    Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    Object cleaner = cleanerMethod.invoke(buffer);
+                    if (cleaner != null) {
+                        cleaner.getClass().getMethod("clean").invoke(cleaner);
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // the buffer is released by the garbage collector
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+/**
+ * Rules for choosing the symbol that enters the basis in a pivot of the
+ * primal simplex method (see {@link Solver#setPricingRule(PricingRule)}).
+ * <p/>
+ * Each rule chooses a non-dummy symbol with a negative coefficient in the
+ * objective function. The rules differ in the cost of the choice and in the
+ * number of pivots needed to reach the optimum.
+ */
+public enum PricingRule {
+
+    /**
+     * The first negative cell in the row's internal order (the previous
+     * default), which is the order in which the cells have been inserted.
+     * It is the cheapest rule per pivot but may need many pivots.
+     */
+    FIRST_NEGATIVE {
+        @Override
+        Symbol enteringSymbol(Row objective, ColumnIndex columns) {
+            for (int i = 0, n = objective.size(); i < n; i++) {
+                if (isCandidate(objective, i)) {
+                    return objective.symbolAt(i);
+                }
+            }
+            return Symbol.INVALID;
+        }
+    },
+
+    /**
+     * The symbol with the most negative coefficient (Dantzig's rule).
+     */
+    DANTZIG {
+        @Override
+        Symbol enteringSymbol(Row objective, ColumnIndex columns) {
+            int best = -1;
+            double min = 0.0;
+            for (int i = 0, n = objective.size(); i < n; i++) {
+                if (isCandidate(objective, i) && objective.coefficientAt(i) < min) {
+                    min = objective.coefficientAt(i);
+                    best = i;
+                }
+            }
+            return best < 0 ? Symbol.INVALID : objective.symbolAt(best);
+        }
+    },
+
+    /**
+     * The symbol whose coefficient is most negative relative to the norm of
+     * its column in the tableau, i.e., the symbol along whose edge the
+     * objective function decreases fastest.
+     * <p/>
+     * The norms are computed from the column index for each choice rather
+     * than approximated by reference weights (devex), which is cheap since
+     * the columns of layout problems are short.
+     */
+    STEEPEST_EDGE {
+        @Override
+        Symbol enteringSymbol(Row objective, ColumnIndex columns) {
+            int best = -1;
+            double max = 0.0;
+            for (int i = 0, n = objective.size(); i < n; i++) {
+                if (isCandidate(objective, i)) {
+                    Symbol symbol = objective.symbolAt(i);
+                    double norm = 1.0;
+                    for (int k = 0, m = columns.size(symbol); k < m; k++) {
+                        double coefficient = columns.rowAt(symbol, k).coefficientFor(symbol);
+                        norm += coefficient * coefficient;
+                    }
+                    double coefficient = objective.coefficientAt(i);
+                    // compares the squares of coefficient / sqrt(norm)
+                    double decrease = coefficient * coefficient / norm;
+                    if (decrease > max) {
+                        max = decrease;
+                        best = i;
+                    }
+                }
+            }
+            return best < 0 ? Symbol.INVALID : objective.symbolAt(best);
+        }
+    },
+
+    /**
+     * The symbol with the smallest id (Bland's rule). Ties of the leaving
+     * row are broken by the smallest id of the basic symbol as well, which
+     * guarantees that the simplex method does not cycle. The solver falls
+     * back to this rule after a long sequence of pivots that do not improve
+     * the objective function.
+     */
+    BLAND {
+        @Override
+        Symbol enteringSymbol(Row objective, ColumnIndex columns) {
+            Symbol best = null;
+            for (int i = 0, n = objective.size(); i < n; i++) {
+                if (isCandidate(objective, i)
+                        && (best == null || objective.symbolAt(i).getId() < best.getId())) {
+                    best = objective.symbolAt(i);
+                }
+            }
+            return best == null ? Symbol.INVALID : best;
+        }
+    };
+
+    /**
+     * Returns the entering symbol for the given objective function or an
+     * invalid symbol if the objective function is at its minimum.
+     */
+    abstract Symbol enteringSymbol(Row objective, ColumnIndex columns);
+
+    private static boolean isCandidate(Row objective, int i) {
+        return objective.symbolAt(i).getType() != Symbol.Type.DUMMY && objective.coefficientAt(i) < 0.0;
+    }
+}
@@ -29,7 +29,8 @@
  */
 package eu.mihosoft.vconstsol.kiwi;
 
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -38,21 +39,132 @@ import java.util.Map;
  */
 public class Row {
 
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * A row with at least this many cells switches to the dense
+     * representation if the ids of its symbols are below
+     * {@code DENSE_FILL} times its size, where both representations need
+     * about the same memory. It switches back once the ids exceed
+     * {@code SPARSE_FILL} times its size.
+     */
+    private static final int DENSE_MIN_SIZE = 32;
+    private static final int DENSE_FILL = 2;
+    private static final int SPARSE_FILL = 8;
+
     private double constant;
 
-    private Map<Symbol, Double> cells = new LinkedHashMap<>();
+    /**
+     * The cells of the row in insertion order. Removing a cell moves the
+     * following cells down by one slot, so the cells are always stored
+     * densely and reading a row never modifies it. The order decides which
+     * symbol enters the basis (see {@link PricingRule}).
+     */
+    private Symbol[] symbols;
+    private double[] coefficients;
+
+    /**
+     * Number of cells.
+     */
+    private int size;
+
+    /**
+     * Open addressing index (linear probing) from symbol to cell slot.
+     * An entry stores the slot + 1, zero marks a free bucket.
+     */
+    private int[] index;
+
+    /**
+     * The basic symbol of this row and the column index of the tableau
+     * while the row is part of the tableau, null otherwise.
+     */
+    private Symbol basic;
+    private ColumnIndex columns;
+
+    /**
+     * Position of this row in the column of each cell (parallel to
+     * {@code symbols}, only used while the row is part of the tableau).
+     */
+    private int[] columnPositions;
+
+    /**
+     * The memory of a row stored off-heap (see {@link OffHeapStorage}),
+     * null for rows stored on the heap. The memory takes the place of the
+     * coefficients, the column positions and the index (in this order), the
+     * arrays of which are not used.
+     */
+    private OffHeapStorage.Block block;
+    private ByteBuffer memory;
+
+    /**
+     * The coefficients and the slots + 1 of the cells indexed by symbol id,
+     * null for sparse rows. Dense rows use these arrays instead of the
+     * coefficients and the index. Symbols that are not contained in the
+     * row have a zero coefficient, so that rows can be added with a single
+     * loop over the arrays (see {@link #insert(Row, double)}).
+     * <p/>
+     * Only heap rows become dense, rows stored off-heap are always sparse.
+     */
+    private double[] dense;
+    private int[] slots;
+
+    /**
+     * One more than the largest symbol id of a dense row, which bounds the
+     * loops over its arrays.
+     */
+    private int range;
+
+    /**
+     * The cleared arrays of a dense row that has become sparse again, which
+     * are reused if the row becomes dense again.
+     */
+    private double[] spareDense;
+    private int[] spareSlots;
 
     public Row() {
         this(0);
     }
 
     public Row(double constant) {
+        this(constant, null);
+    }
+
+    /**
+     * Creates an empty row which is stored in the given storage (on the heap
+     * if the storage is null).
+     */
+    Row(double constant, OffHeapStorage storage) {
         this.constant = constant;
+        this.symbols = new Symbol[INITIAL_CAPACITY];
+        if (storage == null) {
+            this.coefficients = new double[INITIAL_CAPACITY];
+            this.index = new int[INITIAL_CAPACITY * 2];
+        } else {
+            this.block = storage.allocate(this, INITIAL_CAPACITY);
+            this.memory = block.buffer;
+            clearIndex();
+        }
     }
 
+    /**
+     * Creates a copy of the given row, which is stored like the given row.
+     */
     public Row(Row other) {
-        this.cells = new LinkedHashMap<>(other.cells);
         this.constant = other.constant;
+        this.symbols = Arrays.copyOf(other.symbols, other.symbols.length);
+        if (other.dense != null) {
+            this.dense = Arrays.copyOf(other.dense, other.dense.length);
+            this.slots = Arrays.copyOf(other.slots, other.slots.length);
+            this.range = other.range;
+        } else if (other.memory == null) {
+            this.coefficients = Arrays.copyOf(other.coefficients, other.coefficients.length);
+            this.index = Arrays.copyOf(other.index, other.index.length);
+        } else {
+            this.block = other.block.storage.allocate(this, other.symbols.length);
+            this.memory = block.buffer;
+            memory.duplicate().put(other.memory.duplicate());
+        }
+        this.size = other.size;
     }
 
     public double getConstant() {
@@ -63,12 +175,182 @@ public class Row {
         this.constant = constant;
     }
 
+    /**
+     * Returns a copy of the cells of this row.
+     * <p/>
+     * Changes to the returned map are not reflected by the row.
+     */
     public Map<Symbol, Double> getCells() {
+        Map<Symbol, Double> cells = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            cells.put(symbols[i], coefficientAt(i));
+        }
         return cells;
     }
 
     public void setCells(Map<Symbol, Double> cells) {
-        this.cells = cells;
+        while (size > 0) {
+            removeSlot(size - 1);
+        }
+        for (Map.Entry<Symbol, Double> cell : cells.entrySet()) {
+            append(cell.getKey(), cell.getValue());
+        }
+    }
+
+    /**
+     * Returns the number of cells in this row.
+     * <p/>
+     * The cells can be visited with {@link #symbolAt(int)} and
+     * {@link #coefficientAt(int)} for indices below the returned size as
+     * long as the row is not modified.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the symbol of the i-th cell (see {@link #size()}).
+     */
+    Symbol symbolAt(int i) {
+        return symbols[i];
+    }
+
+    /**
+     * Returns the coefficient of the i-th cell (see {@link #size()}).
+     */
+    double coefficientAt(int i) {
+        if (dense != null) {
+            return dense[symbols[i].getId()];
+        }
+        return memory == null ? coefficients[i] : memory().getDouble(i << 3);
+    }
+
+    /**
+     * Indicates whether this row uses the dense representation.
+     */
+    boolean isDense() {
+        return dense != null;
+    }
+
+    /**
+     * Returns the basic symbol of this row or null if the row is not part
+     * of the tableau.
+     */
+    Symbol getBasic() {
+        return basic;
+    }
+
+    /**
+     * Adds this row to the tableau with the given basic symbol and
+     * registers its cells with the column index. Subsequent changes of
+     * the cells are reflected by the column index until the row is
+     * detached.
+     */
+    void attach(Symbol basic, ColumnIndex columns) {
+        this.basic = basic;
+        this.columns = columns;
+
+        if (memory == null && (columnPositions == null || columnPositions.length < symbols.length)) {
+            columnPositions = new int[symbols.length];
+        }
+
+        for (int i = 0; i < size; i++) {
+            setPositionAt(i, columns.add(symbols[i], this));
+        }
+    }
+
+    /**
+     * Removes this row from the given column index, which must be the
+     * index of the tableau that contains the row.
+     * <p/>
+     * A row that is still shared with a forked solver (see
+     * {@link #isAttachedTo(ColumnIndex)}) is left untouched and an
+     * unattached copy is returned instead.
+     *
+     * @return the removed row
+     */
+    Row detach(ColumnIndex columns) {
+        for (int i = 0; i < size; i++) {
+            columns.remove(symbols[i], positionAt(i));
+        }
+
+        if (this.columns != columns) {
+            return new Row(this);
+        }
+
+        this.basic = null;
+        this.columns = null;
+
+        return this;
+    }
+
+    /**
+     * Indicates whether this row has been attached to the given column
+     * index. Rows of a solver that is forked stay attached to the column
+     * index of the solver before the fork. They are shared by both solvers
+     * and must not be modified anymore.
+     */
+    boolean isAttachedTo(ColumnIndex columns) {
+        return this.columns == columns;
+    }
+
+    /**
+     * Returns a copy of this row which takes its place in the given column
+     * index. The cells of the row must already be registered with the
+     * column index at the positions known to this row.
+     */
+    Row copyFor(ColumnIndex columns) {
+        Row copy = new Row(this);
+        copy.basic = basic;
+        copy.columns = columns;
+        if (memory == null) {
+            // the memory of an off-heap row is copied with the positions
+            copy.columnPositions = Arrays.copyOf(columnPositions, symbols.length);
+        }
+
+        for (int i = 0; i < size; i++) {
+            columns.set(symbols[i], positionAt(i), copy);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Removes all cells of this row and sets its constant, keeping the
+     * capacity of the row so that it can be reused (see
+     * {@link Solver#reset()}). The row must not be part of a tableau
+     * anymore, its column index is not updated.
+     */
+    void clear(double constant) {
+        if (dense != null) {
+            // the cells are dropped before the row becomes sparse again
+            for (int i = 0; i < size; i++) {
+                int id = symbols[i].getId();
+                dense[id] = 0.0;
+                slots[id] = 0;
+            }
+        }
+        Arrays.fill(symbols, 0, size, null);
+        this.size = 0;
+        if (dense != null) {
+            sparsify();
+        } else {
+            clearIndex();
+        }
+        this.constant = constant;
+        this.basic = null;
+        this.columns = null;
+    }
+
+    /**
+     * Updates the position of this row in the column of the given symbol.
+     */
+    void setColumnPosition(Symbol symbol, int position) {
+        setPositionAt(slotOf(symbol), position);
     }
 
     /**
@@ -88,16 +370,22 @@ public class Row {
      * is zero, the symbol will be removed from the row
      */
     void insert(Symbol symbol, double coefficient) {
-        Double existingCoefficient = cells.get(symbol);
+        int slot = slotOf(symbol);
 
-        if (existingCoefficient != null) {
-            coefficient += existingCoefficient;
+        if (slot < 0) {
+            if (!Util.nearZero(coefficient)) {
+                append(symbol, coefficient);
+            }
+            return;
         }
 
+        coefficient += coefficientAt(slot);
+
         if (Util.nearZero(coefficient)) {
-            cells.remove(symbol);
+            removeSlot(slot);
+            compact();
         } else {
-            cells.put(symbol, Double.valueOf(coefficient));
+            setCoefficientAt(slot, coefficient);
         }
     }
 
@@ -124,22 +412,54 @@ public class Row {
     void insert(Row other, double coefficient) {
         this.constant += other.constant * coefficient;
 
-        for(Symbol s: other.cells.keySet()){
-            double coeff = other.cells.get(s) * coefficient;
+        if (dense != null && other.dense != null) {
+            insertDense(other, coefficient);
+            return;
+        }
 
-            //insert(s, coeff);  this line looks different than the c++
+        Symbol[] otherSymbols = other.symbols;
+        for (int i = 0, n = other.size; i < n; i++) {
+            insert(otherSymbols[i], other.coefficientAt(i) * coefficient);
+        }
+    }
 
-            //changes start here
-            Double value = this.cells.get(s);
-            if(value == null){
-                this.cells.put(s, 0.0);
-            }
-            double temp = this.cells.get(s) + coeff;
-            this.cells.put(s, temp);
-            if(Util.nearZero(temp)){
-                this.cells.remove(s);
+    /**
+     * Inserts a dense row into this dense row. The coefficients are added
+     * in a single loop over the arrays, which the JIT compiler can
+     * vectorize, before the cells of the other row are visited to update
+     * the cells of this row in the same order as
+     * {@link #insert(Symbol, double)} would.
+     */
+    private void insertDense(Row other, double coefficient) {
+        int otherRange = other.range;
+        if (dense.length < otherRange) {
+            resizeDense(otherRange);
+        }
+        range = Math.max(range, otherRange);
+
+        double[] values = dense;
+        double[] otherValues = other.dense;
+        for (int k = 0; k < otherRange; k++) {
+            values[k] += otherValues[k] * coefficient;
+        }
+
+        Symbol[] otherSymbols = other.symbols;
+        for (int i = 0, n = other.size; i < n; i++) {
+            Symbol symbol = otherSymbols[i];
+            int id = symbol.getId();
+            int entry = slots[id];
+            if (Util.nearZero(values[id])) {
+                if (entry != 0) {
+                    removeSlot(entry - 1);
+                } else {
+                    values[id] = 0.0;
+                }
+            } else if (entry == 0) {
+                appendSlot(symbol);
             }
         }
+
+        compact();
     }
 
     /**
@@ -158,12 +478,11 @@ public class Row {
      * Remove the given symbol from the row.
      */
     void remove(Symbol symbol) {
-
-        cells.remove(symbol);
-        // not sure what this does, can the symbol be added more than once?
-        /*CellMap::iterator it = m_cells.find( symbol );
-        if( it != m_cells.end() )
-            m_cells.erase( it );*/
+        int slot = slotOf(symbol);
+        if (slot >= 0) {
+            removeSlot(slot);
+            compact();
+        }
     }
 
     /**
@@ -172,12 +491,17 @@ public class Row {
     void reverseSign() {
         this.constant = -this.constant;
 
-        Map<Symbol, Double> newCells = new LinkedHashMap<>();
-        for(Symbol s: cells.keySet()){
-            double value = - cells.get(s);
-            newCells.put(s, value);
+        if (dense != null) {
+            double[] values = dense;
+            for (int k = 0, n = range; k < n; k++) {
+                values[k] = -values[k];
+            }
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            setCoefficientAt(i, -coefficientAt(i));
         }
-        this.cells = newCells;
     }
 
     /**
@@ -193,16 +517,22 @@ public class Row {
      * @param symbol
      */
     void solveFor(Symbol symbol) {
-        double coeff = -1.0 / cells.get(symbol);
-        cells.remove(symbol);
+        int slot = slotOf(symbol);
+        double coeff = -1.0 / coefficientAt(slot);
+        removeSlot(slot);
         this.constant *= coeff;
 
-        HashMap<Symbol, Double> newCells = new LinkedHashMap<>();
-        for(Symbol s: cells.keySet()){
-            double value = cells.get(s) * coeff;
-            newCells.put(s, value);
+        if (dense != null) {
+            double[] values = dense;
+            for (int k = 0, n = range; k < n; k++) {
+                values[k] *= coeff;
+            }
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            setCoefficientAt(i, coefficientAt(i) * coeff);
         }
-        this.cells = newCells;
     }
 
     /**
@@ -231,11 +561,8 @@ public class Row {
      * @return
      */
     double coefficientFor(Symbol symbol) {
-        if (this.cells.containsKey(symbol)) {
-            return this.cells.get(symbol);
-        } else {
-            return 0.0;
-        }
+        int slot = slotOf(symbol);
+        return slot < 0 ? 0.0 : coefficientAt(slot);
     }
 
     /**
@@ -247,11 +574,340 @@ public class Row {
      * If the symbol does not exist in the row, this is a no-op.
      */
     void substitute(Symbol symbol, Row row) {
-        if (cells.containsKey(symbol)) {
-            double coefficient = cells.get(symbol);
-            cells.remove(symbol);
+        int slot = slotOf(symbol);
+        if (slot >= 0) {
+            double coefficient = coefficientAt(slot);
+            removeSlot(slot);
             insert(row, coefficient);
         }
     }
 
+    private static int hash(Symbol symbol) {
+        int h = symbol.getId() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the slot of the given symbol or -1 if the row does not
+     * contain the symbol.
+     */
+    private int slotOf(Symbol symbol) {
+        if (dense != null) {
+            int id = symbol.getId();
+            return id >= 0 && id < slots.length ? slots[id] - 1 : -1;
+        }
+        int mask = indexMask();
+        for (int b = hash(symbol) & mask; ; b = (b + 1) & mask) {
+            int entry = bucketAt(b);
+            if (entry == 0) {
+                return -1;
+            }
+            if (symbols[entry - 1] == symbol) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Appends a cell for a symbol that is not contained in the row.
+     */
+    private void append(Symbol symbol, double coefficient) {
+        if (dense != null) {
+            int id = symbol.getId();
+            if (id < 0) {
+                sparsify();
+            } else {
+                if (id >= range) {
+                    if (id >= dense.length) {
+                        resizeDense(id + 1);
+                    }
+                    range = id + 1;
+                }
+                dense[id] = coefficient;
+                appendSlot(symbol);
+                return;
+            }
+        }
+        if (size == symbols.length) {
+            grow();
+        }
+        symbols[size] = symbol;
+        setCoefficientAt(size, coefficient);
+        if (columns != null) {
+            setPositionAt(size, columns.add(symbol, this));
+        }
+        indexSlot(size++);
+
+        if (size >= DENSE_MIN_SIZE && (size & (size - 1)) == 0 && memory == null) {
+            densify();
+        }
+    }
+
+    /**
+     * Appends a cell to a dense row, the coefficient of which has already
+     * been stored.
+     */
+    private void appendSlot(Symbol symbol) {
+        if (size == symbols.length) {
+            grow();
+        }
+        symbols[size] = symbol;
+        if (columns != null) {
+            setPositionAt(size, columns.add(symbol, this));
+        }
+        slots[symbol.getId()] = ++size;
+    }
+
+    private void indexSlot(int slot) {
+        if (dense != null) {
+            slots[symbols[slot].getId()] = slot + 1;
+            return;
+        }
+        int mask = indexMask();
+        int b = hash(symbols[slot]) & mask;
+        while (bucketAt(b) != 0) {
+            b = (b + 1) & mask;
+        }
+        setBucketAt(b, slot + 1);
+    }
+
+    /**
+     * Returns the bucket of the index that refers to the given slot.
+     */
+    private int bucketOf(int slot) {
+        int mask = indexMask();
+        int b = hash(symbols[slot]) & mask;
+        while (bucketAt(b) != slot + 1) {
+            b = (b + 1) & mask;
+        }
+        return b;
+    }
+
+    private void removeSlot(int slot) {
+        if (dense != null) {
+            int id = symbols[slot].getId();
+            dense[id] = 0.0;
+            slots[id] = 0;
+        } else {
+            removeFromIndex(slot);
+        }
+
+        if (columns != null) {
+            columns.remove(symbols[slot], positionAt(slot));
+        }
+
+        int last = --size;
+        for (int i = slot; i < last; i++) {
+            // the following cells move down by one slot
+            if (dense != null) {
+                slots[symbols[i + 1].getId()] = i + 1;
+            } else {
+                setBucketAt(bucketOf(i + 1), i + 1);
+                setCoefficientAt(i, coefficientAt(i + 1));
+            }
+            if (columns != null) {
+                setPositionAt(i, positionAt(i + 1));
+            }
+        }
+        System.arraycopy(symbols, slot + 1, symbols, slot, last - slot);
+        symbols[last] = null;
+    }
+
+    private void removeFromIndex(int slot) {
+        int mask = indexMask();
+        int b = bucketOf(slot);
+
+        // backward shift deletion keeps the probe sequences intact
+        for (int next = (b + 1) & mask, entry; (entry = bucketAt(next)) != 0; next = (next + 1) & mask) {
+            int home = hash(symbols[entry - 1]) & mask;
+            if (((next - home) & mask) >= ((next - b) & mask)) {
+                setBucketAt(b, entry);
+                b = next;
+            }
+        }
+        setBucketAt(b, 0);
+    }
+
+    private void grow() {
+        int previousCapacity = symbols.length;
+        int capacity = previousCapacity * 2;
+        symbols = Arrays.copyOf(symbols, capacity);
+        if (memory == null) {
+            if (columnPositions != null) {
+                columnPositions = Arrays.copyOf(columnPositions, capacity);
+            }
+            if (dense != null) {
+                // the cells of dense rows are indexed by symbol id
+                return;
+            }
+            coefficients = Arrays.copyOf(coefficients, capacity);
+            index = new int[capacity * 2];
+        } else {
+            ByteBuffer previous = block.storage.resize(block, capacity);
+            memory = block.buffer;
+            for (int i = 0; i < size; i++) {
+                memory.putDouble(i << 3, previous.getDouble(i << 3));
+                memory.putInt((capacity << 3) + (i << 2), previous.getInt((previousCapacity << 3) + (i << 2)));
+            }
+            block.storage.release(previous, previousCapacity);
+            clearIndex();
+        }
+        for (int i = 0; i < size; i++) {
+            indexSlot(i);
+        }
+    }
+
+    /**
+     * Switches a sparse heap row to the dense representation if the ids of
+     * its symbols are small enough.
+     */
+    private void densify() {
+        int range = 0;
+        for (int i = 0; i < size; i++) {
+            int id = symbols[i].getId();
+            if (id < 0) {
+                return;
+            }
+            range = Math.max(range, id + 1);
+        }
+        if (range > size * DENSE_FILL) {
+            return;
+        }
+
+        if (spareDense == null || spareDense.length < range) {
+            spareDense = new double[range];
+            spareSlots = new int[range];
+        }
+        for (int i = 0; i < size; i++) {
+            int id = symbols[i].getId();
+            spareDense[id] = coefficients[i];
+            spareSlots[id] = i + 1;
+        }
+        dense = spareDense;
+        slots = spareSlots;
+        this.range = range;
+        spareDense = null;
+        spareSlots = null;
+    }
+
+    /**
+     * Switches a dense row back to the sparse representation. Dense rows
+     * keep the arrays of the sparse representation and sparse rows keep the
+     * arrays of the dense representation, so that rows can switch back and
+     * forth without allocation.
+     */
+    private void sparsify() {
+        if (coefficients != null && coefficients.length > size) {
+            // rows that have lost most of their cells take back the
+            // capacity of the arrays they had before becoming dense
+            if (symbols.length != coefficients.length) {
+                symbols = Arrays.copyOf(symbols, coefficients.length);
+                if (columnPositions != null) {
+                    columnPositions = Arrays.copyOf(columnPositions, coefficients.length);
+                }
+            }
+            Arrays.fill(index, 0);
+        } else {
+            coefficients = new double[symbols.length];
+            index = new int[symbols.length * 2];
+        }
+        for (int i = 0; i < size; i++) {
+            int id = symbols[i].getId();
+            coefficients[i] = dense[id];
+            dense[id] = 0.0;
+            slots[id] = 0;
+        }
+        spareDense = dense;
+        spareSlots = slots;
+        dense = null;
+        slots = null;
+        for (int i = 0; i < size; i++) {
+            indexSlot(i);
+        }
+    }
+
+    /**
+     * Switches a dense row back to the sparse representation once it has
+     * lost most of its cells.
+     */
+    private void compact() {
+        if (dense != null && range > size * SPARSE_FILL) {
+            sparsify();
+        }
+    }
+
+    /**
+     * Grows the arrays of a dense row so that they cover at least the given
+     * range of symbol ids.
+     */
+    private void resizeDense(int minimum) {
+        int length = Math.max(minimum, dense.length + (dense.length >> 1));
+        dense = Arrays.copyOf(dense, length);
+        slots = Arrays.copyOf(slots, length);
+    }
+
+    /*
+     * Access to the coefficients, the column positions and the index, which
+     * are stored either in the arrays or in the off-heap memory. The
+     * coefficients of dense rows are stored in the dense array.
+     */
+
+    private void setCoefficientAt(int slot, double coefficient) {
+        if (dense != null) {
+            dense[symbols[slot].getId()] = coefficient;
+        } else if (memory == null) {
+            coefficients[slot] = coefficient;
+        } else {
+            memory().putDouble(slot << 3, coefficient);
+        }
+    }
+
+    private int positionAt(int slot) {
+        return memory == null ? columnPositions[slot] : memory().getInt((symbols.length << 3) + (slot << 2));
+    }
+
+    private void setPositionAt(int slot, int position) {
+        if (memory == null) {
+            columnPositions[slot] = position;
+        } else {
+            memory().putInt((symbols.length << 3) + (slot << 2), position);
+        }
+    }
+
+    private int indexMask() {
+        return (symbols.length << 1) - 1;
+    }
+
+    private int bucketAt(int b) {
+        return memory == null ? index[b] : memory().getInt(symbols.length * 12 + (b << 2));
+    }
+
+    private void setBucketAt(int b, int entry) {
+        if (memory == null) {
+            index[b] = entry;
+        } else {
+            memory().putInt(symbols.length * 12 + (b << 2), entry);
+        }
+    }
+
+    private void clearIndex() {
+        if (memory == null) {
+            Arrays.fill(index, 0);
+        } else {
+            ByteBuffer memory = memory();
+            for (int b = 0, offset = symbols.length * 12, n = symbols.length << 1; b < n; b++) {
+                memory.putInt(offset + (b << 2), 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the off-heap memory of this row, failing fast instead of
+     * accessing memory that has been freed by closing the storage.
+     */
+    private ByteBuffer memory() {
+        block.storage.ensureOpen();
+        return memory;
+    }
+
 }
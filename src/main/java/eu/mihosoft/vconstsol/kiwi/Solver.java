@@ -31,6 +31,9 @@ package eu.mihosoft.vconstsol.kiwi;
 
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 /**
  * Created by alex on 30/01/15.
@@ -42,8 +45,8 @@ public class Solver {
         Symbol other;
 
         public Tag(){
-            marker = new Symbol();
-            other = new Symbol();
+            marker = Symbol.INVALID;
+            other = Symbol.INVALID;
         }
     }
 
@@ -57,15 +60,487 @@ public class Solver {
             this.tag = tag;
             this.constant = constant;
         }
+
+        public EditInfo(EditInfo other){
+            this(other.constraint, other.tag, other.constant);
+        }
+    }
+
+    /**
+     * A connected component of the tableau, i.e., a set of symbols that are
+     * related by constraints. Rows only contain symbols of the same
+     * component, so each component has its own objective function and
+     * components can be optimized independently of each other.
+     */
+    private static class Component {
+        /**
+         * The id of the symbol that represents the component in the
+         * union-find structure of the solver.
+         */
+        int root;
+        int size = 1;
+        Row objective;
+        List<Symbol> infeasibleRows = new ArrayList<>();
+
+        /**
+         * Whether the component is in the list of components with
+         * infeasible rows.
+         */
+        boolean pending;
+
+        /**
+         * Whether the optimization of the component has been stopped by a
+         * {@link Budget}.
+         */
+        boolean stopped;
+
+        /**
+         * The statistics collected while the component is optimized in
+         * parallel (null if statistics are disabled).
+         */
+        SolverStats stats;
+
+        /**
+         * Pivots performed while the component is optimized in parallel.
+         */
+        long pivots;
+
+        /**
+         * Whether the component has been collected by
+         * {@link Solver#liveComponents(List)}.
+         */
+        boolean live;
+
+        public Component(int root, Row objective){
+            this.root = root;
+            this.objective = objective;
+        }
+
+        public Component(Component other){
+            this.root = other.root;
+            this.size = other.size;
+            this.objective = new Row(other.objective);
+            this.infeasibleRows = new ArrayList<>(other.infeasibleRows);
+            this.pending = other.pending;
+            this.stopped = other.stopped;
+        }
+
+        /**
+         * Resets this component to a new component of the given root
+         * symbol, keeping the capacity of its objective function.
+         */
+        void reset(int root){
+            this.root = root;
+            this.size = 1;
+            this.objective.clear(0);
+            this.infeasibleRows.clear();
+            this.pending = false;
+            this.stopped = false;
+            this.stats = null;
+            this.pivots = 0;
+        }
     }
 
-    private Map<Constraint, Tag> cns = new LinkedHashMap<Constraint, Tag>();
-    private Map<Symbol, Row> rows = new LinkedHashMap<Symbol, Row>();
-    private Map<Variable, Symbol> vars = new LinkedHashMap<Variable, Symbol>();
-    private Map<Variable, EditInfo> edits = new LinkedHashMap<Variable, EditInfo>();
-    private List<Symbol> infeasibleRows = new ArrayList<Symbol>();
-    private Row objective = new Row();
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The number of consecutive pivots without improvement of the objective
+     * function after which the primal simplex method falls back to
+     * {@link PricingRule#BLAND} to prevent cycling.
+     */
+    private static final int MAX_DEGENERATE_PIVOTS = 100;
+
+    private Map<Constraint, Tag> cns = new IdentityHashMap<Constraint, Tag>();
+
+    /**
+     * The basic rows of the tableau indexed by the id of their basic
+     * symbol. Each row also knows its basic symbol (see
+     * {@link Row#getBasic()}).
+     */
+    private Row[] rows = new Row[INITIAL_CAPACITY];
+
+    /**
+     * The variables known to this solver with their symbols and edit
+     * infos, indexed by variable index.
+     */
+    private Variable[] variables = new Variable[INITIAL_CAPACITY];
+    private Symbol[] varSymbols = new Symbol[INITIAL_CAPACITY];
+    private EditInfo[] edits = new EditInfo[INITIAL_CAPACITY];
+    private int variableCount;
+
+    /**
+     * Indices of variables whose index field is owned by another solver.
+     */
+    private Map<Variable, Integer> sharedVariables;
+
+    /**
+     * The owner of the index fields of the variables registered by this
+     * solver (see {@link Variable#claim(Object, int)}). Forks and copies
+     * share the owner with their solver, whose indices they have copied.
+     */
+    private Object indexOwner = new Object();
+
+    /**
+     * The index of the variable of each external symbol (indexed by
+     * symbol id).
+     */
+    private int[] symbolVariables = new int[INITIAL_CAPACITY];
+
+    /**
+     * Variables whose value may have changed since the last call of
+     * {@link #updateVariables()}: a flag per variable index and the list
+     * of flagged indices.
+     */
+    private boolean[] dirty = new boolean[INITIAL_CAPACITY];
+    private int[] dirtyVariables = new int[INITIAL_CAPACITY];
+    private int dirtyCount;
+
+    /**
+     * The variables changed by the last call of {@link #updateVariables()}.
+     */
+    private Variable[] changed = new Variable[INITIAL_CAPACITY];
+    private int changedCount;
+    private final List<Variable> changedVariables = new AbstractList<Variable>() {
+        @Override
+        public Variable get(int index) {
+            if (index >= changedCount) {
+                throw new IndexOutOfBoundsException("index: " + index + ", size: " + changedCount);
+            }
+            return changed[index];
+        }
+
+        @Override
+        public int size() {
+            return changedCount;
+        }
+    };
+
+    /**
+     * The basic rows that contain each symbol. Only rows attached to this
+     * column index belong to this solver exclusively, the others are shared
+     * with forks of this solver (see {@link #fork()}).
+     */
+    private ColumnIndex columns = new ColumnIndex(this, INITIAL_CAPACITY);
+
+    private int symbolCount;
+
+    /**
+     * The symbols created by this solver indexed by id, which are reused
+     * after {@link #reset()} if their type matches.
+     */
+    private Symbol[] symbols = new Symbol[INITIAL_CAPACITY];
+
+    /**
+     * Union-find structure over the symbol ids (see {@link Component}). The
+     * component of a root symbol is stored at its id, symbols that are not
+     * part of a constraint have no component.
+     */
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private Component[] components = new Component[INITIAL_CAPACITY];
+
+    /**
+     * The components with infeasible rows, which may contain components
+     * that have been merged into other components in the meantime.
+     */
+    private List<Component> pendingComponents = new ArrayList<>();
+
+    /**
+     * The components whose optimization has been stopped by a budget, which
+     * may contain components that have been merged into other components in
+     * the meantime.
+     */
+    private List<Component> stoppedComponents = new ArrayList<>();
+
+    /**
+     * The components changed by the current batch of constraints and the
+     * list returned by {@link #liveComponents(List)}, which are reused by
+     * each operation.
+     */
+    private final List<Component> batch = new ArrayList<>();
+    private final List<Component> live = new ArrayList<>();
+
+    private final Consumer<Component> optimizeAction = this::optimize;
+    private final Consumer<Component> dualOptimizeAction = this::dualOptimize;
+
+    /**
+     * Rows, components and tags that have been released by {@link #reset()}
+     * and are recycled instead of allocating new ones.
+     */
+    private final List<Row> freeRows = new ArrayList<>();
+    private final List<Component> freeComponents = new ArrayList<>();
+    private final List<Tag> freeTags = new ArrayList<>();
+
+    /**
+     * Whether the tags and the variable indices of this solver may be used
+     * by forks or copies, which prevents {@link #reset()} from recycling
+     * them. The next reset detaches the solver from its forks and copies.
+     */
+    private boolean shared;
+
+    /**
+     * Whether the variable indices of this solver are used by the snapshots
+     * of a {@link ConcurrentSolver}, which prevents {@link #reset()} from
+     * ever releasing them.
+     */
+    private boolean published;
+
+    /**
+     * The number of calls of {@link #reset()}.
+     */
+    private int resets;
+
+    /**
+     * The pool used to optimize independent components in parallel (null
+     * to optimize sequentially).
+     */
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private PricingRule pricingRule = PricingRule.FIRST_NEGATIVE;
+
+    /**
+     * The storage of new rows or null to store them on the heap.
+     */
+    private OffHeapStorage storage;
+
+    /**
+     * Whether components are currently optimized in parallel, see
+     * {@link #forEach(List, Consumer)}.
+     */
+    private boolean concurrent;
+
+    /**
+     * The statistics of this solver or null if they are disabled.
+     */
+    private SolverStats stats;
+
+    /**
+     * The number of pivots performed by this solver, which is recorded by
+     * the flight recorder events (see {@link SolverEvents}).
+     */
+    private long pivots;
+
+    /**
+     * The budget of the current operation (null if it is unlimited) and the
+     * thread that called the operation.
+     */
+    private Budget budget;
+    private Thread caller;
+
     private Row artificial;
+    private boolean editing;
+
+    public Solver() {
+    }
+
+    /**
+     * Creates a solver with room for the given number of variables and
+     * constraints (including edit variables), which avoids growing the
+     * internal arrays while the solver is built. The capacity is kept by
+     * {@link #reset()}.
+     *
+     * @param expectedVariables the expected number of variables
+     * @param expectedConstraints the expected number of constraints
+     */
+    public Solver(int expectedVariables, int expectedConstraints) {
+        if (expectedVariables < 0 || expectedConstraints < 0) {
+            throw new IllegalArgumentException("expected a non-negative capacity, got "
+                    + expectedVariables + " variables and " + expectedConstraints + " constraints");
+        }
+        this.cns = new IdentityHashMap<>(expectedConstraints);
+        ensureVariableCapacity(expectedVariables);
+        // each constraint needs a marker and at most one other symbol
+        ensureSymbolCapacity(expectedVariables + 2 * expectedConstraints);
+    }
+
+    private Solver(Solver other) {
+        this.cns = new IdentityHashMap<>(other.cns);
+        this.rows = other.rows.clone();
+
+        this.variables = other.variables.clone();
+        this.varSymbols = other.varSymbols.clone();
+        this.edits = new EditInfo[other.edits.length];
+        for (int i = 0; i < other.variableCount; i++) {
+            if (other.edits[i] != null) {
+                this.edits[i] = new EditInfo(other.edits[i]);
+            }
+        }
+        this.variableCount = other.variableCount;
+        if (other.sharedVariables != null) {
+            this.sharedVariables = new HashMap<>(other.sharedVariables);
+        }
+        this.indexOwner = other.indexOwner;
+        this.symbolVariables = other.symbolVariables.clone();
+
+        this.dirty = other.dirty.clone();
+        this.dirtyVariables = other.dirtyVariables.clone();
+        this.dirtyCount = other.dirtyCount;
+        this.changed = new Variable[other.changed.length];
+
+        this.columns = other.columns.fork(this);
+        this.symbolCount = other.symbolCount;
+        this.symbols = other.symbols.clone();
+        this.parents = other.parents.clone();
+        this.components = new Component[other.components.length];
+        for (int i = 0; i < other.symbolCount; i++) {
+            if (other.components[i] != null) {
+                this.components[i] = new Component(other.components[i]);
+            }
+        }
+        for (Component component : other.pendingComponents) {
+            if (other.components[component.root] == component) {
+                this.pendingComponents.add(this.components[component.root]);
+            }
+        }
+        for (Component component : other.stoppedComponents) {
+            if (other.components[component.root] == component) {
+                this.stoppedComponents.add(this.components[component.root]);
+            }
+        }
+        this.pool = other.pool;
+        this.pricingRule = other.pricingRule;
+        this.storage = other.storage;
+        this.editing = other.editing;
+        this.shared = true;
+    }
+
+    /**
+     * Creates a copy of this solver.
+     * <p/>
+     * The copy shares the rows of the tableau with this solver until
+     * either of them modifies a row, which makes forking cheap compared
+     * to building the same solver again. The fork and this solver are
+     * independent afterwards, constraints and edit variables can be added,
+     * removed or edited on either of them without affecting the other one.
+     * Forks may be used from other threads than this solver.
+     * <p/>
+     * Both solvers share the {@link Variable} objects, so
+     * {@link #updateVariables()} of a fork overwrites the values computed
+     * by this solver. Use {@link #valueOf(Variable)} to query a fork
+     * without changing the variables.
+     *
+     * @return the fork of this solver
+     */
+    public Solver fork() {
+        Solver fork = new Solver(this);
+        // rows that are still attached to the old column index are shared
+        this.columns = columns.fork(this);
+        this.shared = true;
+        return fork;
+    }
+
+    /**
+     * Creates a copy of this solver like {@link #fork()}, but without
+     * taking the rows from this solver, which therefore must not be
+     * modified anymore. Copies can be created concurrently.
+     *
+     * @return the copy of this solver
+     */
+    Solver copy() {
+        this.shared = true;
+        return new Solver(this);
+    }
+
+    /**
+     * Removes all constraints, edit variables and variables from this
+     * solver, which is then equivalent to a new solver with the same
+     * settings.
+     * <p/>
+     * Unlike a new solver, the solver keeps the capacity of its internal
+     * arrays and recycles its rows and symbols, so repeatedly building the
+     * same system (e.g., the layout of each frame) does not allocate once
+     * the capacity has been reached. Variables are found fastest if they
+     * are added in the same order after each reset.
+     * <p/>
+     * The values of the variables are not changed. An edit in progress
+     * (see {@link #beginEdit()}) is discarded.
+     */
+    public void reset() {
+        ensureOpen();
+        for (int id = 0; id < symbolCount; id++) {
+            Row row = rows[id];
+            if (row != null) {
+                // rows shared with forks are left alone
+                if (row.isAttachedTo(columns)) {
+                    freeRow(row);
+                }
+                rows[id] = null;
+            }
+            Component component = components[id];
+            if (component != null) {
+                freeComponents.add(component);
+                components[id] = null;
+            }
+        }
+        columns.clear(symbolCount);
+        symbolCount = 0;
+
+        for (int i = 0; i < variableCount; i++) {
+            // the index of the variable is released unless a fork, a copy
+            // or a snapshot may still rely on it
+            if (!shared && !published) {
+                variables[i].release(indexOwner, i);
+            }
+            variables[i] = null;
+            varSymbols[i] = null;
+            edits[i] = null;
+            dirty[i] = false;
+        }
+        variableCount = 0;
+        sharedVariables = null;
+        if (shared || published) {
+            // the indices that are not released stay with the old owner
+            indexOwner = new Object();
+        }
+        dirtyCount = 0;
+        Arrays.fill(changed, 0, changedCount, null);
+        changedCount = 0;
+
+        if (!shared) {
+            for (Tag tag : cns.values()) {
+                freeTags.add(tag);
+            }
+        }
+        cns.clear();
+
+        pendingComponents.clear();
+        stoppedComponents.clear();
+        artificial = null;
+        editing = false;
+        // the rows, tags and indices created from now on are not known to
+        // the forks and copies, so they are recycled again
+        shared = false;
+        resets++;
+    }
+
+    /**
+     * Returns the number of calls of {@link #reset()}, which discards the
+     * variables of this solver.
+     */
+    int getResetCount() {
+        return resets;
+    }
+
+    /**
+     * Prevents {@link #reset()} from releasing the variable indices of this
+     * solver, which are used by the snapshots of a {@link ConcurrentSolver}.
+     */
+    void share() {
+        published = true;
+    }
+
+    /**
+     * Returns the edit variables of this solver in the order their variables
+     * have been added to the solver.
+     */
+    List<Variable> getEditVariables() {
+        List<Variable> editVariables = new ArrayList<>();
+        for (int i = 0; i < variableCount; i++) {
+            if (edits[i] != null) {
+                editVariables.add(variables[i]);
+            }
+        }
+        return editVariables;
+    }
 
 
     /**
@@ -76,17 +551,117 @@ public class Solver {
      * @throws UnsatisfiableConstraintException      The given constraint is required and cannot be satisfied.
      */
     public void addConstraint(Constraint constraint) throws DuplicateConstraintException, UnsatisfiableConstraintException {
+        Object event = startOperation();
+        try {
+            flushEdit();
+            optimize(insertConstraint(constraint));
+        } finally {
+            stopOperation(SolverStats.Operation.ADD_CONSTRAINT, event);
+        }
+    }
+
+    /**
+     * Add a constraint to the solver, optimizing only as far as the given
+     * budget allows (see {@link Budget}).
+     *
+     * @param constraint
+     * @param budget the budget of the optimization
+     * @return true if the solver has been optimized completely, false if the
+     * optimization has been stopped by the budget
+     * @throws DuplicateConstraintException The given constraint has already been added to the solver.
+     * @throws UnsatisfiableConstraintException      The given constraint is required and cannot be satisfied.
+     */
+    public boolean addConstraint(Constraint constraint, Budget budget) throws DuplicateConstraintException, UnsatisfiableConstraintException {
+        Budget previous = useBudget(budget);
+        try {
+            addConstraint(constraint);
+        } finally {
+            this.budget = previous;
+        }
+        return isOptimal();
+    }
+
+    /**
+     * Add several constraints to the solver.
+     * <p/>
+     * All constraints are inserted into the tableau first and the objective
+     * function is optimized only once afterwards, which is considerably
+     * faster than adding the constraints one by one. Independent parts of
+     * the system are optimized in parallel (see
+     * {@link #setForkJoinPool(ForkJoinPool)}). A constraint that
+     * cannot be added does not abort the batch. Instead, its exception is
+     * reported in the returned map.
+     *
+     * @param constraints the constraints to add
+     * @return the constraints that could not be added mapped to the
+     * {@link DuplicateConstraintException} or {@link UnsatisfiableConstraintException}
+     * explaining why (empty if all constraints have been added)
+     */
+    public Map<Constraint, KiwiException> addConstraints(Collection<? extends Constraint> constraints) {
+        Map<Constraint, KiwiException> failures = new LinkedHashMap<>();
+
+        Object event = startOperation();
+        try {
+            flushEdit();
+
+            batch.clear();
+            for (Constraint constraint : constraints) {
+                try {
+                    batch.add(insertConstraint(constraint));
+                } catch (DuplicateConstraintException | UnsatisfiableConstraintException e) {
+                    failures.put(constraint, e);
+                }
+            }
+
+            forEach(liveComponents(batch), optimizeAction);
+        } finally {
+            batch.clear();
+            stopOperation(SolverStats.Operation.ADD_CONSTRAINTS, event);
+        }
+
+        return failures;
+    }
+
+    /**
+     * Add several constraints to the solver, optimizing only as far as the
+     * given budget allows (see {@link Budget}). All constraints are added
+     * even if the budget is exhausted, use {@link #isOptimal()} to check
+     * whether the optimization has been completed.
+     *
+     * @param constraints the constraints to add
+     * @param budget the budget of the optimization
+     * @return the constraints that could not be added mapped to the
+     * exception explaining why (see {@link #addConstraints(Collection)})
+     */
+    public Map<Constraint, KiwiException> addConstraints(Collection<? extends Constraint> constraints, Budget budget) {
+        Budget previous = useBudget(budget);
+        try {
+            return addConstraints(constraints);
+        } finally {
+            this.budget = previous;
+        }
+    }
+
+    /**
+     * Insert a constraint into the tableau without optimizing the
+     * objective function.
+     *
+     * @return the component of the constraint
+     */
+    private Component insertConstraint(Constraint constraint) throws DuplicateConstraintException, UnsatisfiableConstraintException {
 
         if (cns.containsKey(constraint)) {
             throw new DuplicateConstraintException(constraint);
         }
 
-        Tag tag = new Tag();
+        Tag tag = newTag();
         Row row = createRow(constraint, tag);
+        Component component = componentOf(tag.marker);
         Symbol subject = chooseSubject(row, tag);
 
         if(subject.getType() == Symbol.Type.INVALID && allDummies(row)){
             if (!Util.nearZero(row.getConstant())) {
+                freeRow(row);
                 throw new UnsatisfiableConstraintException(constraint);
             } else {
                 subject = tag.marker;
@@ -94,71 +669,159 @@ public class Solver {
         }
 
         if (subject.getType() == Symbol.Type.INVALID) {
-            if (!addWithArtificialVariable(row)) {
+            boolean added = addWithArtificialVariable(row, component);
+            // the tableau only contains copies of the row
+            freeRow(row);
+            if (!added) {
                 throw new UnsatisfiableConstraintException(constraint);
             }
         } else {
             row.solveFor(subject);
-            substitute(subject, row);
-            this.rows.put(subject, row);
+            substitute(subject, row, component);
+            putRow(subject, row);
         }
 
         this.cns.put(constraint, tag);
 
-        optimize(objective);
+        return component;
     }
 
     public void removeConstraint(Constraint constraint) throws UnknownConstraintException, InternalSolverError{
+        Object event = startOperation();
+        try {
+            flushEdit();
+            optimize(deleteConstraint(constraint));
+        } finally {
+            stopOperation(SolverStats.Operation.REMOVE_CONSTRAINT, event);
+        }
+    }
+
+    /**
+     * Remove a constraint from the solver, optimizing only as far as the
+     * given budget allows (see {@link Budget}).
+     *
+     * @param constraint
+     * @param budget the budget of the optimization
+     * @return true if the solver has been optimized completely, false if the
+     * optimization has been stopped by the budget
+     */
+    public boolean removeConstraint(Constraint constraint, Budget budget) throws UnknownConstraintException, InternalSolverError{
+        Budget previous = useBudget(budget);
+        try {
+            removeConstraint(constraint);
+        } finally {
+            this.budget = previous;
+        }
+        return isOptimal();
+    }
+
+    /**
+     * Remove several constraints from the solver.
+     * <p/>
+     * All constraints are removed from the tableau first and the objective
+     * function is optimized only once afterwards. Independent parts of the
+     * system are optimized in parallel (see {@link #setForkJoinPool(ForkJoinPool)}).
+     * A constraint that is
+     * unknown to the solver does not abort the batch. Instead, its exception
+     * is reported in the returned map.
+     *
+     * @param constraints the constraints to remove
+     * @return the constraints that could not be removed mapped to the
+     * {@link UnknownConstraintException} explaining why (empty if all
+     * constraints have been removed)
+     */
+    public Map<Constraint, KiwiException> removeConstraints(Collection<? extends Constraint> constraints) throws InternalSolverError {
+        Map<Constraint, KiwiException> failures = new LinkedHashMap<>();
+
+        Object event = startOperation();
+        try {
+            flushEdit();
+
+            batch.clear();
+            for (Constraint constraint : constraints) {
+                try {
+                    batch.add(deleteConstraint(constraint));
+                } catch (UnknownConstraintException e) {
+                    failures.put(constraint, e);
+                }
+            }
+
+            forEach(liveComponents(batch), optimizeAction);
+        } finally {
+            batch.clear();
+            stopOperation(SolverStats.Operation.REMOVE_CONSTRAINTS, event);
+        }
+
+        return failures;
+    }
+
+    /**
+     * Remove several constraints from the solver, optimizing only as far as
+     * the given budget allows (see {@link Budget}). All constraints are
+     * removed even if the budget is exhausted, use {@link #isOptimal()} to
+     * check whether the optimization has been completed.
+     *
+     * @param constraints the constraints to remove
+     * @param budget the budget of the optimization
+     * @return the constraints that could not be removed mapped to the
+     * exception explaining why (see {@link #removeConstraints(Collection)})
+     */
+    public Map<Constraint, KiwiException> removeConstraints(Collection<? extends Constraint> constraints, Budget budget) throws InternalSolverError {
+        Budget previous = useBudget(budget);
+        try {
+            return removeConstraints(constraints);
+        } finally {
+            this.budget = previous;
+        }
+    }
+
+    /**
+     * Remove a constraint from the tableau without optimizing the
+     * objective function.
+     *
+     * @return the component of the constraint
+     */
+    private Component deleteConstraint(Constraint constraint) throws UnknownConstraintException, InternalSolverError{
         Tag tag = cns.get(constraint);
         if(tag == null){
             throw new UnknownConstraintException(constraint);
         }
 
         cns.remove(constraint);
+        Component component = componentOf(tag.marker);
         removeConstraintEffects(constraint, tag);
 
-        Row row = rows.get(tag.marker);
-        if(row != null){
-            rows.remove(tag.marker);
-        }
-        else{
+        Row row = removeRow(tag.marker);
+        if(row == null){
             row = getMarkerLeavingRow(tag.marker);
             if(row == null){
                 throw new InternalSolverError("internal solver error");
             }
 
-            //This looks wrong! changes made below
-            //Symbol leaving = tag.marker;
-            //rows.remove(tag.marker);
-
-            Symbol leaving = null;
-            for(Symbol s: rows.keySet()){
-                if(rows.get(s) == row){
-                    leaving = s;
-                }
-            }
-            if(leaving == null){
-                throw new InternalSolverError("internal solver error");
-            }
-
-            rows.remove(leaving);
+            Symbol leaving = row.getBasic();
+            row = removeRow(leaving);
             row.solveFor(leaving, tag.marker);
-            substitute(tag.marker, row);
+            substitute(tag.marker, row, component);
         }
-        optimize(objective);
+        freeRow(row);
+
+        return component;
     }
 
     void removeConstraintEffects(Constraint constraint, Tag tag){
+        // a non-required equality weights both of its error symbols in the
+        // objective, hence the marker and the other symbol are checked
         if(tag.marker.getType() == Symbol.Type.ERROR){
             removeMarkerEffects(tag.marker, constraint.getStrength());
         }
-        else if(tag.other.getType() == Symbol.Type.ERROR){
+        if(tag.other.getType() == Symbol.Type.ERROR){
             removeMarkerEffects(tag.other, constraint.getStrength());
         }
     }
 
     void removeMarkerEffects(Symbol marker, double strength){
-        Row row = rows.get(marker);
+        Row objective = componentOf(marker).objective;
+        Row row = rowFor(marker);
         if(row != null){
             objective.insert(row, -strength);
         }else {
@@ -175,13 +838,10 @@ public class Solver {
         Row second = null;
         Row third = null;
 
-        for(Symbol s: rows.keySet()){
-            Row candidateRow = rows.get(s);
+        for(int i = 0, n = columns.size(marker); i < n; i++){
+            Row candidateRow = columns.rowAt(marker, i);
             double c = candidateRow.coefficientFor(marker);
-            if(c == 0.0){
-                continue;
-            }
-            if(s.getType() == Symbol.Type.EXTERNAL){
+            if(candidateRow.getBasic().getType() == Symbol.Type.EXTERNAL){
                 third = candidateRow;
             }
             else if(c < 0.0){
@@ -214,7 +874,7 @@ public class Solver {
     }
 
     public void addEditVariable(Variable variable, double strength) throws DuplicateEditVariableException, RequiredFailureException{
-        if(edits.containsKey(variable)){
+        if(hasEditVariable(variable)){
             throw new DuplicateEditVariableException();
         }
 
@@ -228,89 +888,453 @@ public class Solver {
         terms.add(new Term(variable));
         Constraint constraint = new Constraint(new Expression(terms), RelationalOperator.OP_EQ, strength);
 
+        Object event = startOperation();
         try {
             addConstraint(constraint);
         } catch (DuplicateConstraintException e) {
             e.printStackTrace();
         } catch (UnsatisfiableConstraintException e) {
             e.printStackTrace();
+        } finally {
+            stopOperation(SolverStats.Operation.ADD_EDIT_VARIABLE, event);
         }
 
 
         EditInfo info = new EditInfo(constraint, cns.get(constraint), 0.0);
-        edits.put(variable, info);
+        edits[indexOf(variable)] = info;
     }
 
     public void removeEditVariable(Variable variable) throws UnknownEditVariableException{
-        EditInfo edit = edits.get(variable);
+        EditInfo edit = editFor(variable);
         if(edit == null){
             throw new UnknownEditVariableException();
         }
 
+        Object event = startOperation();
         try {
             removeConstraint(edit.constraint);
         } catch (UnknownConstraintException e) {
             e.printStackTrace();
+        } finally {
+            stopOperation(SolverStats.Operation.REMOVE_EDIT_VARIABLE, event);
         }
 
-        edits.remove(variable);
+        edits[indexOf(variable)] = null;
     }
 
     public boolean hasEditVariable(Variable variable){
-        return edits.containsKey(variable);
+        return editFor(variable) != null;
     }
 
+    /**
+     * Suggest a value for the given edit variable.
+     * <p/>
+     * The solver is re-optimized immediately unless an edit has been started
+     * with {@link #beginEdit()}, in which case this is deferred until
+     * {@link #commitEdit()} is called.
+     * <p/>
+     * Suggesting values and updating the variables does not allocate memory
+     * once the rows and columns of the tableau have reached their capacity,
+     * unless several independent components are optimized in parallel. This
+     * makes it suitable for interactive dragging.
+     *
+     * @param variable the edit variable
+     * @param value the suggested value
+     * @throws UnknownEditVariableException The given variable is not an edit variable.
+     */
     public void suggestValue(Variable variable, double value) throws UnknownEditVariableException{
-        EditInfo info = edits.get(variable);
+        EditInfo info = editFor(variable);
         if(info == null){
             throw new UnknownEditVariableException();
         }
 
+        Object event = startOperation();
+        try {
+            applySuggestion(info, value);
+
+            if(!editing){
+                dualOptimize();
+                optimizeStopped();
+            }
+        } finally {
+            stopOperation(SolverStats.Operation.SUGGEST_VALUE, event);
+        }
+    }
+
+    /**
+     * Suggest a value for the given edit variable, optimizing only as far as
+     * the given budget allows (see {@link Budget}).
+     *
+     * @param variable the edit variable
+     * @param value the suggested value
+     * @param budget the budget of the optimization
+     * @return true if the solver has been optimized completely, false if the
+     * optimization has been stopped by the budget or deferred by an edit
+     * @throws UnknownEditVariableException The given variable is not an edit variable.
+     */
+    public boolean suggestValue(Variable variable, double value, Budget budget) throws UnknownEditVariableException{
+        Budget previous = useBudget(budget);
+        try {
+            suggestValue(variable, value);
+        } finally {
+            this.budget = previous;
+        }
+        return isOptimal();
+    }
+
+    /**
+     * Suggest values for several edit variables at once.
+     * <p/>
+     * The row constants are adjusted for all suggestions before the solver
+     * is re-optimized once and the variables are updated, which is much
+     * cheaper than suggesting the values one by one.
+     *
+     * @param variables the edit variables
+     * @param values the suggested values (one per variable)
+     * @throws UnknownEditVariableException One of the given variables is not an edit variable.
+     *                                      No value has been suggested in this case.
+     */
+    public void suggestValues(Variable[] variables, double[] values) throws UnknownEditVariableException{
+        if(variables.length != values.length){
+            throw new IllegalArgumentException("expected " + variables.length + " values, got " + values.length);
+        }
+
+        for(Variable variable: variables){
+            if(editFor(variable) == null){
+                throw new UnknownEditVariableException();
+            }
+        }
+
+        Object event = startOperation();
+        try {
+            beginEdit();
+            for(int i = 0; i < variables.length; i++){
+                applySuggestion(editFor(variables[i]), values[i]);
+            }
+            commitEdit();
+        } finally {
+            stopOperation(SolverStats.Operation.SUGGEST_VALUES, event);
+        }
+    }
+
+    /**
+     * Suggest values for several edit variables at once, optimizing only as
+     * far as the given budget allows (see {@link Budget}).
+     *
+     * @param variables the edit variables
+     * @param values the suggested values (one per variable)
+     * @param budget the budget of the optimization
+     * @return true if the solver has been optimized completely, false if the
+     * optimization has been stopped by the budget
+     * @throws UnknownEditVariableException One of the given variables is not an edit variable.
+     *                                      No value has been suggested in this case.
+     */
+    public boolean suggestValues(Variable[] variables, double[] values, Budget budget) throws UnknownEditVariableException{
+        Budget previous = useBudget(budget);
+        try {
+            suggestValues(variables, values);
+        } finally {
+            this.budget = previous;
+        }
+        return isOptimal();
+    }
+
+    /**
+     * Resume the optimization stopped by the budget of a previous operation
+     * (including the suggestions of the current edit, if any).
+     *
+     * @param budget the budget of the optimization
+     * @return true if the solver has been optimized completely, false if the
+     * optimization has been stopped by the budget again
+     */
+    public boolean resume(Budget budget){
+        ensureOpen();
+        Budget previous = useBudget(budget);
+        try {
+            dualOptimize();
+            optimizeStopped();
+        } finally {
+            this.budget = previous;
+        }
+        return isOptimal();
+    }
+
+    /**
+     * Indicates whether the current solution is optimal, i.e., no
+     * optimization has been stopped by a {@link Budget} and no suggestions
+     * of an edit are pending.
+     */
+    public boolean isOptimal(){
+        return stoppedComponents.isEmpty() && (!editing || pendingComponents.isEmpty());
+    }
+
+    /**
+     * Sets the budget of the current operation.
+     *
+     * @return the previous budget
+     */
+    private Budget useBudget(Budget budget){
+        if(budget == null){
+            throw new IllegalArgumentException("budget must not be null");
+        }
+        Budget previous = this.budget;
+        this.budget = budget;
+        this.caller = Thread.currentThread();
+        return previous;
+    }
+
+    /**
+     * Reserves a pivot of the budget of the current operation.
+     *
+     * @return false if the operation must stop
+     */
+    private boolean mayPivot(){
+        return budget == null || budget.tryPivot(caller);
+    }
+
+    /**
+     * Start an edit.
+     * <p/>
+     * Until {@link #commitEdit()} is called, {@link #suggestValue(Variable, double)}
+     * only adjusts the tableau and defers the re-optimization. Adding or
+     * removing constraints or edit variables during an edit re-optimizes the
+     * pending suggestions first.
+     */
+    public void beginEdit(){
+        editing = true;
+    }
+
+    /**
+     * Finish an edit started with {@link #beginEdit()}.
+     * <p/>
+     * The solver is re-optimized once for all suggestions made during the
+     * edit and the values of the variables are updated.
+     */
+    public void commitEdit(){
+        Object event = startOperation();
+        try {
+            endEdit();
+            updateVariables();
+        } finally {
+            stopOperation(SolverStats.Operation.COMMIT_EDIT, event);
+        }
+    }
+
+    /**
+     * Finish an edit started with {@link #beginEdit()} without updating the
+     * variables.
+     */
+    void endEdit(){
+        editing = false;
+        dualOptimize();
+        optimizeStopped();
+    }
+
+    /**
+     * Re-optimizes the suggestions made during the current edit (if any) and
+     * resumes the optimization stopped by a budget.
+     * <p/>
+     * Constraints can only be inserted into or removed from a feasible
+     * tableau, hence the infeasible rows are optimized regardless of the
+     * budget. Outside of an edit, only the dual optimizations stopped by a
+     * budget are completed. The infeasible rows left behind by a rejected
+     * constraint are left to the next suggestion, as without a budget.
+     */
+    private void flushEdit(){
+        Budget budget = this.budget;
+        this.budget = null;
+        try {
+            if(editing){
+                dualOptimize();
+            }else{
+                dualOptimizeStopped();
+            }
+        } finally {
+            this.budget = budget;
+        }
+        optimizeStopped();
+    }
+
+    /**
+     * Completes the dual optimization of the components that have been
+     * stopped by a budget.
+     */
+    private void dualOptimizeStopped(){
+        if(stoppedComponents.isEmpty()){
+            return;
+        }
+        List<Component> stopped = liveComponents(stoppedComponents);
+        int infeasible = 0;
+        for(int i = 0, n = stopped.size(); i < n; i++){
+            Component component = stopped.get(i);
+            if(!component.infeasibleRows.isEmpty()){
+                stopped.set(infeasible++, component);
+            }
+        }
+        while(stopped.size() > infeasible){
+            stopped.remove(stopped.size() - 1);
+        }
+        forEach(stopped, dualOptimizeAction);
+    }
+
+    /**
+     * Resumes the optimization of the components that have been stopped by
+     * a budget.
+     */
+    private void optimizeStopped(){
+        if(stoppedComponents.isEmpty()){
+            return;
+        }
+        List<Component> stopped = liveComponents(stoppedComponents);
+        stoppedComponents.clear();
+        int feasible = 0;
+        for(int i = 0, n = stopped.size(); i < n; i++){
+            Component component = stopped.get(i);
+            // the primal simplex method requires a feasible tableau
+            if(component.infeasibleRows.isEmpty()){
+                component.stopped = false;
+                stopped.set(feasible++, component);
+            }else{
+                stoppedComponents.add(component);
+            }
+        }
+        while(stopped.size() > feasible){
+            stopped.remove(stopped.size() - 1);
+        }
+        forEach(stopped, optimizeAction);
+    }
+
+    /**
+     * Adjust the tableau for a new value of an edit variable. The rows that
+     * become infeasible are collected for {@link #dualOptimize()}.
+     */
+    private void applySuggestion(EditInfo info, double value){
         double delta = value - info.constant;
         info.constant = value;
 
-        Row row = rows.get(info.tag.marker);
+        Component component = componentOf(info.tag.marker);
+
+        Row row = rowFor(info.tag.marker);
         if(row != null){
-            if(row.add(-delta) < 0.0){
-                infeasibleRows.add(info.tag.marker);
+            if(own(row).add(-delta) < 0.0){
+                addInfeasibleRow(component, info.tag.marker);
             }
-			dualOptimize();
             return;
         }
 
-        row = rows.get(info.tag.other);
+        row = rowFor(info.tag.other);
         if(row != null){
-            if(row.add(delta) < 0.0){
-                infeasibleRows.add(info.tag.other);
+            if(own(row).add(delta) < 0.0){
+                addInfeasibleRow(component, info.tag.other);
             }
-			dualOptimize();
             return;
         }
 
-        for(Symbol s: rows.keySet()){
-            Row currentRow = rows.get(s);
+        for(int i = 0, n = columns.size(info.tag.marker); i < n; i++){
+            Row currentRow = own(columns.rowAt(info.tag.marker, i));
             double coefficient = currentRow.coefficientFor(info.tag.marker);
-            if(coefficient != 0.0 && currentRow.add(delta * coefficient) < 0.0 && s.getType() != Symbol.Type.EXTERNAL){
-                infeasibleRows.add(s);
+            Symbol s = currentRow.getBasic();
+            markDirty(s);
+            if(currentRow.add(delta * coefficient) < 0.0 && s.getType() != Symbol.Type.EXTERNAL){
+                addInfeasibleRow(component, s);
             }
         }
-
-        dualOptimize();
     }
 
     /**
      * Update the values of the external solver variables.
+     * <p/>
+     * Only variables whose row has changed since the last update are
+     * written.
+     *
+     * @return the variables whose value has changed (an unmodifiable view
+     * which is only valid until the next call of this method)
      */
-    public void updateVariables() {
+    public List<Variable> updateVariables() {
+        Object event = startOperation();
+        try {
+            changedCount = 0;
 
-        for (Map.Entry<Variable, Symbol> varEntry : vars.entrySet()) {
-            Variable variable = varEntry.getKey();
-            Row row = this.rows.get(varEntry.getValue());
+            for (int i = 0; i < dirtyCount; i++) {
+                int index = dirtyVariables[i];
+                dirty[index] = false;
 
-            if (row == null) {
-                variable.setValue(0);
-            } else {
-                variable.setValue(row.getConstant());
+                Variable variable = variables[index];
+                Row row = rowFor(varSymbols[index]);
+                double value = row == null ? 0 : row.getConstant();
+
+                if (variable.getValue() != value) {
+                    variable.setValue(value);
+                    changed[changedCount++] = variable;
+                }
+            }
+
+            Arrays.fill(changed, changedCount, changed.length, null);
+            dirtyCount = 0;
+        } finally {
+            stopOperation(SolverStats.Operation.UPDATE_VARIABLES, event);
+        }
+
+        return changedVariables;
+    }
+
+    /**
+     * Returns the value of the given variable in the current solution of
+     * this solver without updating the variable.
+     *
+     * @param variable the variable
+     * @return the value of the variable or zero if the variable is not
+     * part of any constraint of this solver
+     */
+    public double valueOf(Variable variable) {
+        int index = indexOf(variable);
+        if (index < 0) {
+            return 0;
+        }
+        Row row = rowFor(varSymbols[index]);
+        return row == null ? 0 : row.getConstant();
+    }
+
+    /**
+     * Returns the number of variables known to this solver. The variables
+     * are indexed in the order they have been added to the solver.
+     */
+    int getVariableCount() {
+        return variableCount;
+    }
+
+    /**
+     * Returns the variable with the given index.
+     */
+    Variable getVariable(int index) {
+        return variables[index];
+    }
+
+    /**
+     * Writes the values of all variables of the current solution into the
+     * given array (indexed by variable index) without updating the
+     * variables.
+     */
+    void copyValues(double[] values) {
+        for (int i = 0; i < variableCount; i++) {
+            Row row = rowFor(varSymbols[i]);
+            values[i] = row == null ? 0 : row.getConstant();
+        }
+    }
+
+    /**
+     * Remembers that the value of the variable of the given symbol may
+     * have changed (no-op for symbols that do not belong to a variable).
+     */
+    private void markDirty(Symbol symbol) {
+        if (symbol.getType() == Symbol.Type.EXTERNAL) {
+            int index = symbolVariables[symbol.getId()];
+            if (!dirty[index]) {
+                dirty[index] = true;
+                // the list is rebuilt after optimizing in parallel
+                if (!concurrent) {
+                    dirtyVariables[dirtyCount++] = index;
+                }
             }
         }
     }
@@ -334,19 +1358,21 @@ public class Solver {
      * for tracking the movement of the constraint in the tableau.
      */
     Row createRow(Constraint constraint, Tag tag) {
-        Expression expression = constraint.getExpression();
-        Row row = new Row(expression.getConstant());
+        Row row = newRow(constraint.getConstant());
+        Component component = null;
 
-        for (Term term : expression.getTerms()) {
-            if (!Util.nearZero(term.getCoefficient())) {
-                Symbol symbol = getVarSymbol(term.getVariable());
+        for (int i = 0, n = constraint.getTermCount(); i < n; i++) {
+            double coefficient = constraint.getCoefficient(i);
+            if (!Util.nearZero(coefficient)) {
+                Symbol symbol = getVarSymbol(constraint.getVariable(i));
+                component = join(component, symbol);
 
-                Row otherRow = rows.get(symbol);
+                Row otherRow = rowFor(symbol);
 
                 if (otherRow == null) {
-                    row.insert(symbol, term.getCoefficient());
+                    row.insert(symbol, coefficient);
                 } else {
-                    row.insert(otherRow, term.getCoefficient());
+                    row.insert(otherRow, coefficient);
                 }
             }
         }
@@ -355,29 +1381,33 @@ public class Solver {
             case OP_LE:
             case OP_GE: {
                 double coeff = constraint.getOp() == RelationalOperator.OP_LE ? 1.0 : -1.0;
-                Symbol slack = new Symbol(Symbol.Type.SLACK);
+                Symbol slack = newSymbol(Symbol.Type.SLACK);
+                component = join(component, slack);
                 tag.marker = slack;
                 row.insert(slack, coeff);
                 if (constraint.getStrength() < Strength.REQUIRED) {
-                    Symbol error = new Symbol(Symbol.Type.ERROR);
+                    Symbol error = newSymbol(Symbol.Type.ERROR);
+                    component = join(component, error);
                     tag.other = error;
                     row.insert(error, -coeff);
-                    this.objective.insert(error, constraint.getStrength());
+                    component.objective.insert(error, constraint.getStrength());
                 }
                 break;
             }
             case OP_EQ: {
                 if (constraint.getStrength() < Strength.REQUIRED) {
-                    Symbol errplus = new Symbol(Symbol.Type.ERROR);
-                    Symbol errminus = new Symbol(Symbol.Type.ERROR);
+                    Symbol errplus = newSymbol(Symbol.Type.ERROR);
+                    Symbol errminus = newSymbol(Symbol.Type.ERROR);
+                    component = join(join(component, errplus), errminus);
                     tag.marker = errplus;
                     tag.other = errminus;
                     row.insert(errplus, -1.0); // v = eplus - eminus
                     row.insert(errminus, 1.0); // v - eplus + eminus = 0
-                    this.objective.insert(errplus, constraint.getStrength());
-                    this.objective.insert(errminus, constraint.getStrength());
+                    component.objective.insert(errplus, constraint.getStrength());
+                    component.objective.insert(errminus, constraint.getStrength());
                 } else {
-                    Symbol dummy = new Symbol(Symbol.Type.DUMMY);
+                    Symbol dummy = newSymbol(Symbol.Type.DUMMY);
+                    join(component, dummy);
                     tag.marker = dummy;
                     row.insert(dummy);
                 }
@@ -406,9 +1436,9 @@ public class Solver {
      */
     private static Symbol chooseSubject(Row row, Tag tag) {
 
-        for (Map.Entry<Symbol, Double> cell : row.getCells().entrySet()) {
-            if (cell.getKey().getType() == Symbol.Type.EXTERNAL) {
-                return cell.getKey();
+        for (int i = 0, n = row.size(); i < n; i++) {
+            if (row.symbolAt(i).getType() == Symbol.Type.EXTERNAL) {
+                return row.symbolAt(i);
             }
         }
         if (tag.marker.getType() == Symbol.Type.SLACK || tag.marker.getType() == Symbol.Type.ERROR) {
@@ -419,7 +1449,7 @@ public class Solver {
             if (row.coefficientFor(tag.other) < 0.0)
                 return tag.other;
         }
-        return new Symbol();
+        return Symbol.INVALID;
     }
 
     /**
@@ -427,44 +1457,36 @@ public class Solver {
      * <p/>
      * This will return false if the constraint cannot be satisfied.
      */
-    private boolean addWithArtificialVariable(Row row) {
+    private boolean addWithArtificialVariable(Row row, Component component) {
         //TODO check this
 
+        if (stats != null) {
+            stats.artificialVariables++;
+        }
+
         // Create and add the artificial variable to the tableau
 
-        Symbol art = new Symbol(Symbol.Type.SLACK);
-        rows.put(art, new Row(row));
+        Symbol art = newSymbol(Symbol.Type.SLACK);
+        putRow(art, newRow(row));
 
-        this.artificial = new Row(row);
+        this.artificial = newRow(row);
 
         // Optimize the artificial objective. This is successful
         // only if the artificial objective is optimized to zero.
-        optimize(this.artificial);
+        optimize(component, this.artificial);
         boolean success = Util.nearZero(artificial.getConstant());
+        freeRow(artificial);
         artificial = null;
 
         // If the artificial variable is basic, pivot the row so that
         // it becomes basic. If the row is constant, exit early.
 
-        Row rowptr = this.rows.get(art);
+        Row rowptr = removeRow(art);
 
         if (rowptr != null) {
 
-            /**this looks wrong!!!*/
-            //rows.remove(rowptr);
-
-            LinkedList<Symbol> deleteQueue = new LinkedList<>();
-            for(Symbol s: rows.keySet()){
-                if(rows.get(s) == rowptr){
-                    deleteQueue.add(s);
-                }
-            }
-            while(!deleteQueue.isEmpty()){
-                rows.remove(deleteQueue.pop());
-            }
-            deleteQueue.clear();
-
-            if (rowptr.getCells().isEmpty()) {
+            if (rowptr.isEmpty()) {
+                freeRow(rowptr);
                 return success;
             }
 
@@ -473,16 +1495,16 @@ public class Solver {
                 return false; // unsatisfiable (will this ever happen?)
             }
             rowptr.solveFor(art, entering);
-            substitute(entering, rowptr);
-            this.rows.put(entering, rowptr);
+            substitute(entering, rowptr, component);
+            putRow(entering, rowptr);
         }
 
         // Remove the artificial variable from the tableau.
-        for (Map.Entry<Symbol, Row> rowEntry : rows.entrySet()) {
-            rowEntry.getValue().remove(art);
+        for (int n = columns.size(art); n > 0; n = columns.size(art)) {
+            own(columns.rowAt(art, n - 1)).remove(art);
         }
 
-        objective.remove(art);
+        component.objective.remove(art);
 
         return success;
     }
@@ -491,17 +1513,29 @@ public class Solver {
      * Substitute the parametric symbol with the given row.
      * <p/>
      * This method will substitute all instances of the parametric symbol
-     * in the tableau and the objective function with the given row.
+     * in the tableau and the objective function of its component with the
+     * given row.
      */
-    void substitute(Symbol symbol, Row row) {
-        for (Map.Entry<Symbol, Row> rowEntry : rows.entrySet()) {
-            rowEntry.getValue().substitute(symbol, row);
-            if (rowEntry.getKey().getType() != Symbol.Type.EXTERNAL && rowEntry.getValue().getConstant() < 0.0) {
-                infeasibleRows.add(rowEntry.getKey());
+    void substitute(Symbol symbol, Row row, Component component) {
+        SolverStats stats = statsOf(component);
+        if (stats != null) {
+            stats.substitutions++;
+            stats.substitutedRows += columns.size(symbol);
+        }
+
+        // substituting removes the symbol from the row and thereby the row
+        // from the column, so the column is consumed from its end
+        for (int n = columns.size(symbol); n > 0; n = columns.size(symbol)) {
+            Row basicRow = own(columns.rowAt(symbol, n - 1));
+            Symbol basic = basicRow.getBasic();
+            basicRow.substitute(symbol, row);
+            markDirty(basic);
+            if (basic.getType() != Symbol.Type.EXTERNAL && basicRow.getConstant() < 0.0) {
+                addInfeasibleRow(component, basic);
             }
         }
 
-        objective.substitute(symbol, row);
+        component.objective.substitute(symbol, row);
 
         if (artificial != null) {
             artificial.substitute(symbol, row);
@@ -516,83 +1550,498 @@ public class Solver {
      *
      * @throws InternalSolverError The value of the objective function is unbounded.
      */
-    void optimize(Row objective) {
+    void optimize(Component component, Row objective) {
+        SolverStats stats = statsOf(component);
+        PricingRule rule = pricingRule;
+        int degeneratePivots = 0;
         while (true) {
-            Symbol entering = getEnteringSymbol(objective);
+            Symbol entering = rule.enteringSymbol(objective, columns);
             if (entering.getType() == Symbol.Type.INVALID) {
                 return;
             }
 
-            Row entry = getLeavingRow(entering);
+            Row entry = getLeavingRow(entering, rule == PricingRule.BLAND);
             if(entry == null){
                 throw  new InternalSolverError("The objective is unbounded.");
             }
-            Symbol leaving = null;
 
-            for(Symbol key: rows.keySet()){
-                if(rows.get(key) == entry){
-                    leaving = key;
-                }
+            if (objective == component.objective && !mayPivot()) {
+                // the artificial objective is never stopped, it decides
+                // whether a constraint can be satisfied
+                addStoppedComponent(component);
+                return;
             }
 
-            Symbol entryKey = null;
-            for(Symbol key: rows.keySet()){
-                if(rows.get(key) == entry){
-                    entryKey = key;
-                }
+            if (stats != null) {
+                stats.primalPivots++;
+            }
+            double value = objective.getConstant();
+            pivot(component, entry, entering);
+
+            if (!Util.nearZero(value - objective.getConstant())) {
+                degeneratePivots = 0;
+                rule = pricingRule;
+            } else if (++degeneratePivots > MAX_DEGENERATE_PIVOTS) {
+                rule = PricingRule.BLAND;
             }
-
-            rows.remove(entryKey);
-            entry.solveFor(leaving, entering);
-            substitute(entering, entry);
-            rows.put(entering, entry);
         }
     }
 
+    /**
+     * Optimize the objective function of the given component.
+     */
+    private void optimize(Component component) {
+        optimize(component, component.objective);
+    }
+
+    /**
+     * Optimize all components with infeasible rows (in parallel if there
+     * are several of them).
+     */
     void dualOptimize() throws InternalSolverError{
+        if(pendingComponents.isEmpty()){
+            return;
+        }
+
+        Object event = SolverEvents.beginOperation(pivots);
+        try {
+            while(!pendingComponents.isEmpty()){
+                List<Component> pending = liveComponents(pendingComponents);
+                pendingComponents.clear();
+                for(int i = 0, n = pending.size(); i < n; i++){
+                    pending.get(i).pending = false;
+                }
+                forEach(pending, dualOptimizeAction);
+                if(budget != null && budget.isExhausted()){
+                    break;
+                }
+            }
+        } finally {
+            SolverEvents.endOperation(event, "DUAL_OPTIMIZE", pivots, this);
+        }
+    }
+
+    private void dualOptimize(Component component) throws InternalSolverError{
+        List<Symbol> infeasibleRows = component.infeasibleRows;
+        SolverStats stats = statsOf(component);
         while(!infeasibleRows.isEmpty()){
-            Symbol leaving = infeasibleRows.remove(infeasibleRows.size() - 1);
-            Row row = rows.get(leaving);
+            Symbol leaving = infeasibleRows.get(infeasibleRows.size() - 1);
+            Row row = rowFor(leaving);
+            if(row != null && row.getConstant() < 0.0 && !mayPivot()){
+                addPendingComponent(component);
+                addStoppedComponent(component);
+                return;
+            }
+            infeasibleRows.remove(infeasibleRows.size() - 1);
             if(row != null && row.getConstant() < 0.0){
-                Symbol entering = getDualEnteringSymbol(row);
+                Symbol entering = getDualEnteringSymbol(row, component.objective);
                 if(entering.getType() == Symbol.Type.INVALID){
                     throw new InternalSolverError("internal solver error");
                 }
-                rows.remove(leaving);
-                row.solveFor(leaving, entering);
-                substitute(entering, row);
-                rows.put(entering, row);
+                if(stats != null){
+                    stats.dualPivots++;
+                }
+                pivot(component, row, entering);
+            }
+        }
+    }
+
+    /**
+     * Remembers that the row of the given basic symbol has become
+     * infeasible.
+     */
+    private void addInfeasibleRow(Component component, Symbol symbol){
+        SolverStats stats = statsOf(component);
+        if(stats != null){
+            stats.infeasibleRows++;
+        }
+        component.infeasibleRows.add(symbol);
+        addPendingComponent(component);
+    }
+
+    /**
+     * Remembers that the given component has infeasible rows.
+     */
+    private void addPendingComponent(Component component){
+        // components optimized in parallel are registered afterwards
+        if(!component.pending && !concurrent){
+            component.pending = true;
+            pendingComponents.add(component);
+        }
+    }
+
+    /**
+     * Remembers that the primal or dual optimization of the given component
+     * has been stopped by a budget.
+     */
+    private void addStoppedComponent(Component component){
+        component.stopped = true;
+        // components optimized in parallel are registered afterwards
+        if(!concurrent){
+            stoppedComponents.add(component);
+        }
+    }
+
+    /**
+     * Applies the given action to each of the given components, in
+     * parallel if there are several components and a pool has been set.
+     * <p/>
+     * The action may only modify rows and variables of its component.
+     * Dirty variables and components with infeasible rows are tracked
+     * afterwards.
+     */
+    private void forEach(List<Component> components, Consumer<Component> action){
+        if(pool == null || components.size() < 2){
+            // indexed, so that edits do not allocate iterators
+            for(int i = 0, n = components.size(); i < n; i++){
+                action.accept(components.get(i));
+            }
+            return;
+        }
+
+        if(stats != null){
+            for(Component component : components){
+                component.stats = new SolverStats(null);
+            }
+        }
+
+        concurrent = true;
+        try {
+            pool.invoke(new ComponentAction(components, 0, components.size(), action));
+        } finally {
+            concurrent = false;
+
+            for(Component component : components){
+                pivots += component.pivots;
+                component.pivots = 0;
+            }
+
+            if(stats != null){
+                for(Component component : components){
+                    stats.add(component.stats);
+                    component.stats = null;
+                }
+            }
+
+            dirtyCount = 0;
+            for(int i = 0; i < variableCount; i++){
+                if(dirty[i]){
+                    dirtyVariables[dirtyCount++] = i;
+                }
+            }
+
+            for(Component component : components){
+                if(!component.infeasibleRows.isEmpty() && !component.pending){
+                    component.pending = true;
+                    pendingComponents.add(component);
+                }
+                if(component.stopped){
+                    stoppedComponents.add(component);
+                }
+            }
+        }
+    }
+
+    private static class ComponentAction extends RecursiveAction {
+        final List<Component> components;
+        final int from;
+        final int to;
+        final Consumer<Component> action;
+
+        public ComponentAction(List<Component> components, int from, int to, Consumer<Component> action){
+            this.components = components;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from == 1){
+                action.accept(components.get(from));
+            }else{
+                int middle = (from + to) >>> 1;
+                invokeAll(new ComponentAction(components, from, middle, action),
+                        new ComponentAction(components, middle, to, action));
             }
         }
     }
 
+    /**
+     * Sets the pool used to optimize independent parts of the system in
+     * parallel. By default, the common pool is used.
+     * <p/>
+     * Constraints that share no variables, directly or through other
+     * constraints, form independent parts of the system. The parts are
+     * optimized in parallel when several constraints are added or removed
+     * at once and when an edit with several edit variables is committed.
+     *
+     * @param pool the pool or null to optimize sequentially
+     */
+    public void setForkJoinPool(ForkJoinPool pool){
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the rule for choosing the entering symbol of the pivots that
+     * optimize the objective function. The default is
+     * {@link PricingRule#FIRST_NEGATIVE}.
+     *
+     * @param pricingRule the pricing rule
+     */
+    public void setPricingRule(PricingRule pricingRule){
+        if(pricingRule == null){
+            throw new IllegalArgumentException("pricing rule must not be null");
+        }
+        this.pricingRule = pricingRule;
+    }
+
+    public PricingRule getPricingRule(){
+        return pricingRule;
+    }
 
     /**
-     * Compute the entering variable for a pivot operation.
+     * Sets the storage of the rows of the tableau. By default, the rows are
+     * stored on the heap. Rows that have been created before are not moved,
+     * so the storage is usually set before constraints are added.
      * <p/>
-     * This method will return first symbol in the objective function which
-     * is non-dummy and has a coefficient less than zero. If no symbol meets
-     * the criteria, it means the objective function is at a minimum, and an
-     * invalid symbol is returned.
+     * Forks of this solver use the same storage. The solver must not be used
+     * anymore once the storage has been closed.
+     *
+     * @param storage the off-heap storage or null to store new rows on the heap
+     */
+    public void setOffHeapStorage(OffHeapStorage storage){
+        if(storage != null){
+            storage.ensureOpen();
+        }
+        this.storage = storage;
+        // recycled rows must not end up in the wrong storage
+        freeRows.clear();
+        freeComponents.clear();
+    }
+
+    public OffHeapStorage getOffHeapStorage(){
+        return storage;
+    }
+
+    /**
+     * Enables or disables the collection of statistics (see
+     * {@link #getStats()}). Statistics are disabled by default and cost
+     * nothing then. Enabling them again starts with zero counters, forks
+     * start with disabled statistics.
+     *
+     * @param enabled whether statistics are collected
+     */
+    public void setStatsEnabled(boolean enabled){
+        if(!enabled){
+            stats = null;
+        }else if(stats == null){
+            stats = new SolverStats(this);
+        }
+    }
+
+    /**
+     * Returns the statistics of this solver, which are updated as the
+     * solver is used.
+     *
+     * @return the statistics or null if they are disabled
+     */
+    public SolverStats getStats(){
+        return stats;
+    }
+
+    /**
+     * Returns the number of basic rows of the tableau.
+     */
+    int getRowCount(){
+        Row[] rows = this.rows;
+        int count = 0;
+        for(Row row : rows){
+            if(row != null){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of cells of the basic rows of the tableau.
+     */
+    long getNonZeroCount(){
+        Row[] rows = this.rows;
+        long count = 0;
+        for(Row row : rows){
+            if(row != null){
+                count += row.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the objective function of the component of the given
+     * variable, which must be known to this solver.
+     */
+    Row getObjective(Variable variable){
+        return componentOf(varSymbols[indexOf(variable)]).objective;
+    }
+
+    /**
+     * Starts a public operation for the statistics and the flight recorder.
+     *
+     * @return the flight recorder event of the operation (if any)
+     */
+    private Object startOperation(){
+        ensureOpen();
+        if(stats != null){
+            stats.start();
+        }
+        return SolverEvents.beginOperation(pivots);
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if the rows of this solver
+     * are stored in an off-heap storage which has been closed.
+     */
+    private void ensureOpen(){
+        if(storage != null){
+            storage.ensureOpen();
+        }
+    }
+
+    private void stopOperation(SolverStats.Operation operation, Object event){
+        if(stats != null){
+            stats.stop(operation);
+        }
+        SolverEvents.endOperation(event, operation.name(), pivots, this);
+    }
+
+    /**
+     * Returns the statistics to update for the given component, which are
+     * separate for components optimized in parallel.
      */
-    private static Symbol getEnteringSymbol(Row objective) {
+    private SolverStats statsOf(Component component){
+        return concurrent ? component.stats : stats;
+    }
+
+    /**
+     * Returns the component of the given symbol or null if the symbol is
+     * not part of any constraint.
+     */
+    private Component componentOf(Symbol symbol){
+        return components[find(symbol.getId())];
+    }
+
+    /**
+     * Returns the components that have not been merged into other
+     * components (each at most once). The returned list is reused by the
+     * next call of this method.
+     */
+    private List<Component> liveComponents(List<Component> components){
+        live.clear();
+        for(int i = 0, n = components.size(); i < n; i++){
+            Component root = this.components[find(components.get(i).root)];
+            if(!root.live){
+                root.live = true;
+                live.add(root);
+            }
+        }
+        for(int i = 0, n = live.size(); i < n; i++){
+            live.get(i).live = false;
+        }
+        return live;
+    }
 
-        for (Map.Entry<Symbol, Double> cell : objective.getCells().entrySet()) {
+    private int find(int id){
+        while(parents[id] != id){
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
 
-            if (cell.getKey().getType() != Symbol.Type.DUMMY && cell.getValue() < 0.0) {
-                return cell.getKey();
+    /**
+     * Adds the given symbol with its component to the given component.
+     *
+     * @param component the component or null to return the component of
+     * the symbol (creating one if the symbol has none)
+     * @return the merged component
+     */
+    private Component join(Component component, Symbol symbol){
+        int root = find(symbol.getId());
+        Component other = components[root];
+
+        if(other == null){
+            if(component == null){
+                component = components[root] = newComponent(root);
+            }else{
+                parents[root] = component.root;
+                component.size++;
             }
+            return component;
+        }
+
+        if(component == null || component == other){
+            return other;
+        }
+
+        // union by size, the smaller component is merged into the larger one
+        Component larger = component.size >= other.size ? component : other;
+        Component smaller = larger == component ? other : component;
+
+        parents[smaller.root] = larger.root;
+        components[smaller.root] = null;
+        larger.size += smaller.size;
+        larger.objective.insert(smaller.objective);
+        if(!smaller.infeasibleRows.isEmpty()){
+            larger.infeasibleRows.addAll(smaller.infeasibleRows);
+            addPendingComponent(larger);
+        }
+        if(smaller.stopped){
+            addStoppedComponent(larger);
+        }else if(!smaller.pending){
+            // components are recycled unless they are still referenced by
+            // the lists of pending or stopped components
+            freeComponents.add(smaller);
+            return larger;
+        }
+        freeRow(smaller.objective);
+        smaller.objective = null;
+
+        return larger;
+    }
+
+
+    /**
+     * Exchange the basic symbol of the given row with the entering symbol.
+     * <p/>
+     * The row is solved for the entering symbol, which is then substituted
+     * in the rest of the tableau and the objective function.
+     */
+    private void pivot(Component component, Row row, Symbol entering) {
+        if (concurrent) {
+            component.pivots++;
+        } else {
+            pivots++;
         }
-        return new Symbol();
+        Object event = SolverEvents.beginPivot();
+
+        Symbol leaving = row.getBasic();
+        row = removeRow(leaving);
+        row.solveFor(leaving, entering);
+        substitute(entering, row, component);
+        putRow(entering, row);
 
+        SolverEvents.endPivot(event, entering.getType(), leaving.getType(), row.size());
     }
 
-    private Symbol getDualEnteringSymbol(Row row){
-        Symbol entering = new Symbol();
+    private static Symbol getDualEnteringSymbol(Row row, Row objective){
+        Symbol entering = Symbol.INVALID;
         double ratio = Double.MAX_VALUE;
-        for(Symbol s: row.getCells().keySet()){
+        for(int i = 0, n = row.size(); i < n; i++){
+            Symbol s = row.symbolAt(i);
             if(s.getType() != Symbol.Type.DUMMY){
-                double currentCell = row.getCells().get(s);
+                double currentCell = row.coefficientAt(i);
                 if(currentCell > 0.0){
                     double coefficient = objective.coefficientFor(s);
                     double r = coefficient / currentCell;
@@ -614,13 +2063,14 @@ public class Solver {
      */
     private Symbol anyPivotableSymbol(Row row) {
         Symbol symbol = null;
-        for (Map.Entry<Symbol, Double> entry : row.getCells().entrySet()) {
-            if (entry.getKey().getType() == Symbol.Type.SLACK || entry.getKey().getType() == Symbol.Type.ERROR) {
-                symbol = entry.getKey();
+        for (int i = 0, n = row.size(); i < n; i++) {
+            Symbol s = row.symbolAt(i);
+            if (s.getType() == Symbol.Type.SLACK || s.getType() == Symbol.Type.ERROR) {
+                symbol = s;
             }
         }
         if (symbol == null) {
-            symbol = new Symbol();
+            symbol = Symbol.INVALID;
         }
         return symbol;
     }
@@ -636,17 +2086,18 @@ public class Solver {
      * found, the end() iterator will be returned. This indicates that
      * the objective function is unbounded.
      */
-    private Row getLeavingRow(Symbol entering) {
+    private Row getLeavingRow(Symbol entering, boolean bland) {
         double ratio = Double.MAX_VALUE;
         Row row = null;
 
-        for(Symbol key: rows.keySet()){
-            if(key.getType() != Symbol.Type.EXTERNAL){
-                Row candidateRow = rows.get(key);
+        for(int i = 0, n = columns.size(entering); i < n; i++){
+            Row candidateRow = columns.rowAt(entering, i);
+            if(candidateRow.getBasic().getType() != Symbol.Type.EXTERNAL){
                 double temp = candidateRow.coefficientFor(entering);
                 if(temp < 0){
                     double temp_ratio = (-candidateRow.getConstant() / temp);
-                    if(temp_ratio < ratio){
+                    if(temp_ratio < ratio || (bland && row != null && temp_ratio == ratio
+                            && candidateRow.getBasic().getId() < row.getBasic().getId())){
                         ratio = temp_ratio;
                         row = candidateRow;
                     }
@@ -662,22 +2113,226 @@ public class Solver {
      * If a symbol does not exist for the variable, one will be created.
      */
     private Symbol getVarSymbol(Variable variable) {
-        Symbol symbol;
-        if (vars.containsKey(variable)) {
-            symbol = vars.get(variable);
-        } else {
-            symbol = new Symbol(Symbol.Type.EXTERNAL);
-            vars.put(variable, symbol);
+        int index = indexOf(variable);
+        if (index < 0) {
+            index = addVariable(variable);
+        }
+        return varSymbols[index];
+    }
+
+    /**
+     * Returns the index of the given variable or -1 if the variable is
+     * unknown to this solver.
+     */
+    private int indexOf(Variable variable) {
+        int index = variable.index;
+        if (index >= 0 && index < variableCount && variables[index] == variable) {
+            return index;
+        }
+        if (sharedVariables != null) {
+            Integer shared = sharedVariables.get(variable);
+            if (shared != null) {
+                return shared;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates whether the index field of the given variable is the given
+     * index of this solver and owned by it.
+     */
+    boolean ownsIndex(Variable variable, int index) {
+        return variable.isOwnedBy(indexOwner, index);
+    }
+
+    /**
+     * Registers the given variable and creates its external symbol.
+     *
+     * @return the index of the variable
+     */
+    private int addVariable(Variable variable) {
+        ensureVariableCapacity(variableCount + 1);
+
+        int index = variableCount++;
+        Symbol symbol = newSymbol(Symbol.Type.EXTERNAL);
+        variables[index] = variable;
+        varSymbols[index] = symbol;
+        symbolVariables[symbol.getId()] = index;
+        markDirty(symbol);
+
+        if (!variable.claim(indexOwner, index)) {
+            if (sharedVariables == null) {
+                sharedVariables = new HashMap<>();
+            }
+            sharedVariables.put(variable, index);
+        }
+
+        return index;
+    }
+
+    private EditInfo editFor(Variable variable) {
+        int index = indexOf(variable);
+        return index < 0 ? null : edits[index];
+    }
+
+    /**
+     * Makes sure that variables with indices below the given capacity can
+     * be stored.
+     */
+    private void ensureVariableCapacity(int capacity) {
+        if (capacity > variables.length) {
+            capacity = Math.max(capacity, variables.length * 2);
+            variables = Arrays.copyOf(variables, capacity);
+            varSymbols = Arrays.copyOf(varSymbols, capacity);
+            edits = Arrays.copyOf(edits, capacity);
+            dirty = Arrays.copyOf(dirty, capacity);
+            dirtyVariables = Arrays.copyOf(dirtyVariables, capacity);
+            changed = Arrays.copyOf(changed, capacity);
+        }
+    }
+
+    /**
+     * Makes sure that symbols with ids below the given capacity can be
+     * stored.
+     */
+    private void ensureSymbolCapacity(int capacity) {
+        if (capacity > rows.length) {
+            capacity = Math.max(capacity, rows.length * 2);
+            rows = Arrays.copyOf(rows, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+            symbolVariables = Arrays.copyOf(symbolVariables, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            components = Arrays.copyOf(components, capacity);
+            columns.ensureCapacity(capacity);
+        }
+    }
+
+    /**
+     * Creates a new symbol with the next free id. The symbol of a previous
+     * use of the id is reused if it has the same type, as symbols are
+     * immutable.
+     */
+    private Symbol newSymbol(Symbol.Type type) {
+        int id = symbolCount++;
+        ensureSymbolCapacity(symbolCount);
+        parents[id] = id;
+        Symbol symbol = symbols[id];
+        if (symbol == null || symbol.getType() != type) {
+            symbol = symbols[id] = new Symbol(type, id);
         }
         return symbol;
     }
 
+    /**
+     * Returns an empty row with the given constant, which is recycled if
+     * possible.
+     */
+    private Row newRow(double constant) {
+        if (freeRows.isEmpty()) {
+            return new Row(constant, storage);
+        }
+        Row row = freeRows.remove(freeRows.size() - 1);
+        row.setConstant(constant);
+        return row;
+    }
+
+    /**
+     * Returns a copy of the given row, which is recycled if possible.
+     */
+    private Row newRow(Row other) {
+        if (freeRows.isEmpty()) {
+            return new Row(other);
+        }
+        Row row = newRow(0);
+        row.insert(other);
+        return row;
+    }
+
+    /**
+     * Recycles a row that has been removed from the tableau.
+     */
+    private void freeRow(Row row) {
+        row.clear(0);
+        freeRows.add(row);
+    }
+
+    private Tag newTag() {
+        if (freeTags.isEmpty()) {
+            return new Tag();
+        }
+        Tag tag = freeTags.remove(freeTags.size() - 1);
+        tag.marker = Symbol.INVALID;
+        tag.other = Symbol.INVALID;
+        return tag;
+    }
+
+    private Component newComponent(int root) {
+        if (freeComponents.isEmpty()) {
+            return new Component(root, newRow(0));
+        }
+        Component component = freeComponents.remove(freeComponents.size() - 1);
+        component.reset(root);
+        return component;
+    }
+
+    /**
+     * Returns the row of the given basic symbol or null if the symbol is
+     * not basic.
+     */
+    private Row rowFor(Symbol symbol) {
+        int id = symbol.getId();
+        return id < 0 ? null : rows[id];
+    }
+
+    /**
+     * Makes the given symbol basic with the given row.
+     */
+    private void putRow(Symbol symbol, Row row) {
+        int id = symbol.getId();
+        if (rows[id] != null) {
+            freeRow(rows[id].detach(columns));
+        }
+        rows[id] = row;
+        row.attach(symbol, columns);
+        markDirty(symbol);
+    }
+
+    /**
+     * Removes the row of the given basic symbol from the tableau.
+     *
+     * @return the removed row or null if the symbol is not basic
+     */
+    private Row removeRow(Symbol symbol) {
+        Row row = rowFor(symbol);
+        if (row != null) {
+            row = row.detach(columns);
+            rows[symbol.getId()] = null;
+            markDirty(symbol);
+        }
+        return row;
+    }
+
+    /**
+     * Returns the given basic row if it belongs to this solver exclusively
+     * and may be modified. A row that is still shared with a fork is
+     * replaced by a copy in the tableau, which is returned instead.
+     */
+    Row own(Row row) {
+        if (row.isAttachedTo(columns)) {
+            return row;
+        }
+        Row copy = row.copyFor(columns);
+        rows[copy.getBasic().getId()] = copy;
+        return copy;
+    }
+
     /**
      * Test whether a row is composed of all dummy variables.
      */
     private static boolean allDummies(Row row) {
-        for (Map.Entry<Symbol, Double> cell : row.getCells().entrySet()) {
-            if (cell.getKey().getType() != Symbol.Type.DUMMY) {
+        for (int i = 0, n = row.size(); i < n; i++) {
+            if (row.symbolAt(i).getType() != Symbol.Type.DUMMY) {
                 return false;
             }
         }
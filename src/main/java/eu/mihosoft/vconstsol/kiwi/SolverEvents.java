@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+/**
+ * Java Flight Recorder events of the solver.
+ * <p/>
+ * This is the implementation for Java 8, which records nothing. On Java 11
+ * and later, the multi-release jar replaces it with the implementation in
+ * {@code src/main/java11}, which emits an event for each operation of the
+ * solver and for each pivot. Both implementations must have the same
+ * methods.
+ */
+final class SolverEvents {
+
+    private SolverEvents() {
+    }
+
+    /**
+     * Starts the event of an operation.
+     *
+     * @param pivots the number of pivots of the solver so far
+     * @return the event or null if it is not recorded
+     */
+    static Object beginOperation(long pivots) {
+        return null;
+    }
+
+    /**
+     * Ends and commits the event of an operation.
+     *
+     * @param event the event returned by {@link #beginOperation(long)}
+     * @param operation the name of the operation
+     * @param pivots the number of pivots of the solver so far
+     * @param solver the solver whose rows are counted
+     */
+    static void endOperation(Object event, String operation, long pivots, Solver solver) {
+    }
+
+    /**
+     * Starts the event of a pivot.
+     *
+     * @return the event or null if it is not recorded
+     */
+    static Object beginPivot() {
+        return null;
+    }
+
+    /**
+     * Ends and commits the event of a pivot.
+     *
+     * @param event the event returned by {@link #beginPivot()}
+     * @param entering the type of the entering symbol
+     * @param leaving the type of the leaving symbol
+     * @param rowSize the number of cells of the substituted row
+     */
+    static void endPivot(Object event, Symbol.Type entering, Symbol.Type leaving, int rowSize) {
+    }
+}
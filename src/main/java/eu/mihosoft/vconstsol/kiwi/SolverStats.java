@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Statistics of a {@link Solver}, which explain where the time of an
+ * operation went: pivots, substitutions, infeasible rows and the size of
+ * the tableau.
+ * <p/>
+ * Statistics are collected only after they have been enabled with
+ * {@link Solver#setStatsEnabled(boolean)}. The counters are not
+ * synchronized. Reading them from another thread than the one that uses
+ * the solver (e.g., via JMX) yields values that may be slightly out of
+ * date.
+ */
+public final class SolverStats implements SolverStatsMXBean {
+
+    /**
+     * The public operations of the solver that are timed.
+     */
+    public enum Operation {
+        ADD_CONSTRAINT,
+        ADD_CONSTRAINTS,
+        REMOVE_CONSTRAINT,
+        REMOVE_CONSTRAINTS,
+        ADD_EDIT_VARIABLE,
+        REMOVE_EDIT_VARIABLE,
+        SUGGEST_VALUE,
+        SUGGEST_VALUES,
+        COMMIT_EDIT,
+        UPDATE_VARIABLES
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    /**
+     * The solver whose tableau is measured or null for the statistics of
+     * a component optimized in parallel.
+     */
+    private final Solver solver;
+
+    long primalPivots;
+    long dualPivots;
+    long substitutions;
+    long substitutedRows;
+    long artificialVariables;
+    long infeasibleRows;
+
+    private final long[] operationCounts = new long[OPERATIONS.length];
+    private final long[] operationNanos = new long[OPERATIONS.length];
+
+    /**
+     * The number of running public operations, operations that are called
+     * by other operations are not timed separately.
+     */
+    private int depth;
+    private long start;
+
+    private ObjectName name;
+
+    SolverStats(Solver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Returns the number of pivots performed to optimize the objective
+     * functions (including the artificial ones of required constraints).
+     */
+    @Override
+    public long getPrimalPivots() {
+        return primalPivots;
+    }
+
+    /**
+     * Returns the number of pivots performed to make infeasible rows
+     * feasible again after values have been suggested.
+     */
+    @Override
+    public long getDualPivots() {
+        return dualPivots;
+    }
+
+    public long getPivots() {
+        return primalPivots + dualPivots;
+    }
+
+    /**
+     * Returns the number of symbols that have been substituted in the
+     * tableau.
+     */
+    @Override
+    public long getSubstitutions() {
+        return substitutions;
+    }
+
+    /**
+     * Returns the number of basic rows that have been updated by
+     * substitutions.
+     */
+    @Override
+    public long getSubstitutedRows() {
+        return substitutedRows;
+    }
+
+    /**
+     * Returns the number of constraints that have been added with an
+     * artificial variable.
+     */
+    @Override
+    public long getArtificialVariables() {
+        return artificialVariables;
+    }
+
+    /**
+     * Returns the number of rows that have become infeasible.
+     */
+    @Override
+    public long getInfeasibleRows() {
+        return infeasibleRows;
+    }
+
+    /**
+     * Returns the current number of basic rows of the tableau.
+     */
+    @Override
+    public int getRowCount() {
+        return solver.getRowCount();
+    }
+
+    /**
+     * Returns the current number of cells of the basic rows of the
+     * tableau.
+     */
+    @Override
+    public long getNonZeroCount() {
+        return solver.getNonZeroCount();
+    }
+
+    public long getCount(Operation operation) {
+        return operationCounts[operation.ordinal()];
+    }
+
+    public long getNanos(Operation operation) {
+        return operationNanos[operation.ordinal()];
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        return toMap(operationCounts);
+    }
+
+    @Override
+    public Map<String, Long> getOperationNanos() {
+        return toMap(operationNanos);
+    }
+
+    private static Map<String, Long> toMap(long[] values) {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            map.put(operation.name(), values[operation.ordinal()]);
+        }
+        return map;
+    }
+
+    /**
+     * Sets all counters to zero.
+     */
+    @Override
+    public void reset() {
+        primalPivots = 0;
+        dualPivots = 0;
+        substitutions = 0;
+        substitutedRows = 0;
+        artificialVariables = 0;
+        infeasibleRows = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            operationCounts[i] = 0;
+            operationNanos[i] = 0;
+        }
+    }
+
+    /**
+     * Registers these statistics with the platform MBean server under the
+     * object name {@code eu.mihosoft.vconstsol.kiwi:type=SolverStats,name=<name>}.
+     * <p/>
+     * The MBean server keeps the solver reachable until
+     * {@link #unregisterMBean()} is called.
+     *
+     * @param name the name of the solver
+     * @return the object name of the MBean
+     * @throws JMException if the MBean cannot be registered
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("eu.mihosoft.vconstsol.kiwi:type=SolverStats,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.name = objectName;
+        return objectName;
+    }
+
+    /**
+     * Unregisters these statistics from the platform MBean server (if they
+     * have been registered).
+     *
+     * @throws JMException if the MBean cannot be unregistered
+     */
+    public void unregisterMBean() throws JMException {
+        if (name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            name = null;
+        }
+    }
+
+    /**
+     * Starts timing a public operation.
+     */
+    void start() {
+        if (depth++ == 0) {
+            start = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stops timing the public operation started by the matching call of
+     * {@link #start()}.
+     */
+    void stop(Operation operation) {
+        // the statistics may have been enabled during the operation
+        if (depth > 0 && --depth == 0) {
+            operationNanos[operation.ordinal()] += System.nanoTime() - start;
+            operationCounts[operation.ordinal()]++;
+        }
+    }
+
+    /**
+     * Adds the counters of a component optimized in parallel.
+     */
+    void add(SolverStats other) {
+        primalPivots += other.primalPivots;
+        dualPivots += other.dualPivots;
+        substitutions += other.substitutions;
+        substitutedRows += other.substitutedRows;
+        infeasibleRows += other.infeasibleRows;
+    }
+}
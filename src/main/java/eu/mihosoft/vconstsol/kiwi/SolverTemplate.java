@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A solved set of constraints from which solvers can be instantiated
+ * without adding and optimizing the constraints again.
+ * <p/>
+ * The edit variables of the compiled solver are the parameters of the
+ * template. Each instance starts with the solution of the template and
+ * is re-optimized only for the values suggested for its parameters.
+ * Instances share the rows of the template until they modify them (see
+ * {@link Solver#fork()}), so instantiating a template costs little more
+ * than copying the arrays of the tableau. Templates are immutable and
+ * may be instantiated from several threads at once.
+ * <p/>
+ * Instances share the {@link Variable} objects with the template and
+ * with each other. Use {@link Solver#valueOf(Variable)} to query an
+ * instance, {@link Solver#updateVariables()} writes its values into the
+ * shared variables.
+ */
+public final class SolverTemplate {
+
+    private final Solver solver;
+    private final List<Variable> parameters;
+
+    private SolverTemplate(Solver solver) {
+        this.solver = solver;
+        this.parameters = solver.getEditVariables();
+    }
+
+    /**
+     * Compiles the constraints and edit variables of the given solver into
+     * a template. The solver is not affected and may still be used. Work
+     * stopped by a {@link Budget} and pending suggestions of an edit are
+     * optimized for the template.
+     *
+     * @param solver the solver
+     * @return the template
+     */
+    public static SolverTemplate compile(Solver solver) {
+        Solver template = solver.fork();
+        template.resume(Budget.unlimited());
+        return new SolverTemplate(template);
+    }
+
+    /**
+     * Returns the parameters of this template, i.e., the edit variables
+     * of the compiled solver in the order their variables have been added
+     * to the solver. Parameters are distinct even if their names are equal.
+     */
+    public List<Variable> getParameters() {
+        return Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * Returns the parameter with the given name.
+     *
+     * @param name the name of the parameter
+     * @return the edit variable of the parameter or null if the template
+     * has no parameter with the given name
+     * @throws IllegalArgumentException Several parameters have the given name.
+     */
+    public Variable getParameter(String name) {
+        Variable parameter = null;
+        for (Variable variable : parameters) {
+            if (name == null ? variable.getName() == null : name.equals(variable.getName())) {
+                if (parameter != null) {
+                    throw new IllegalArgumentException("several parameters are named " + name);
+                }
+                parameter = variable;
+            }
+        }
+        return parameter;
+    }
+
+    /**
+     * Creates a solver with the constraints, edit variables and solution
+     * of this template.
+     *
+     * @return the new solver
+     */
+    public Solver instantiate() {
+        return solver.copy();
+    }
+
+    /**
+     * Creates a solver with the constraints and edit variables of this
+     * template and suggests the given values for its parameters.
+     *
+     * @param values the values by parameter (edit variable)
+     * @return the new solver
+     * @throws UnknownEditVariableException One of the given variables is not a parameter of this template.
+     */
+    public Solver instantiate(Map<Variable, Double> values) throws UnknownEditVariableException {
+        Solver instance = solver.copy();
+
+        // the shared variables are not updated, unlike by commitEdit()
+        instance.beginEdit();
+        for (Map.Entry<Variable, Double> entry : values.entrySet()) {
+            instance.suggestValue(entry.getKey(), entry.getValue());
+        }
+        instance.endEdit();
+
+        return instance;
+    }
+}
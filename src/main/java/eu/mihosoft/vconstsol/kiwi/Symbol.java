@@ -42,18 +42,41 @@ public class Symbol {
         DUMMY
     }
 
-    private Type type;
+    /**
+     * The invalid symbol, which is returned where no symbol has been found.
+     */
+    static final Symbol INVALID = new Symbol();
+
+    private final Type type;
+
+    private final int id;
 
     public Symbol() {
-        this(Type.INVALID);
+        this(Type.INVALID, -1);
     }
 
-    public Symbol(Type type) {
+    /**
+     * Creates a symbol. The id is assigned by the owning solver and is
+     * used to index the tableau.
+     *
+     * @param type the type of the symbol
+     * @param id the id of the symbol, unique within the owning solver
+     */
+    Symbol(Type type, int id) {
         this.type = type;
+        this.id = id;
     }
 
     public Type getType() {
         return type;
     }
 
+    /**
+     * Returns the id of this symbol (unique within the owning solver,
+     * -1 for invalid symbols).
+     */
+    int getId() {
+        return id;
+    }
+
 }
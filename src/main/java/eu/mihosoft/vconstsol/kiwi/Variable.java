@@ -29,6 +29,8 @@
  */
 package eu.mihosoft.vconstsol.kiwi;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
  * Created by alex on 30/01/15.
  */
@@ -38,6 +40,20 @@ public class Variable {
 
     private double value;
 
+    private static final AtomicReferenceFieldUpdater<Variable, Object> OWNER =
+            AtomicReferenceFieldUpdater.newUpdater(Variable.class, Object.class, "owner");
+
+    /**
+     * The owner of the index of this variable (null if unowned) and the
+     * index (-1 if unowned). A solver claims the index with a
+     * compare-and-set of the owner, so that solvers on different threads
+     * never overwrite each other's index, and only the owner writes the
+     * index. Solvers validate the index before using it and keep the
+     * indices of the variables they do not own in a map.
+     */
+    private volatile Object owner;
+    volatile int index = -1;
+
     public Variable(String name) {
         this.name = name;
     }
@@ -57,6 +73,39 @@ public class Variable {
         return name;
     }
 
+    /**
+     * Claims the index of this variable for the given owner if the variable
+     * is unowned.
+     *
+     * @return false if the variable is owned already
+     */
+    boolean claim(Object owner, int index) {
+        if (!OWNER.compareAndSet(this, null, owner)) {
+            return false;
+        }
+        this.index = index;
+        return true;
+    }
+
+    /**
+     * Indicates whether the given owner has claimed the given index of this
+     * variable.
+     */
+    boolean isOwnedBy(Object owner, int index) {
+        return this.owner == owner && this.index == index;
+    }
+
+    /**
+     * Releases the given index of this variable if it is owned by the given
+     * owner.
+     */
+    void release(Object owner, int index) {
+        if (isOwnedBy(owner, index)) {
+            this.index = -1;
+            this.owner = null;
+        }
+    }
+
     @Override
     public String toString() {
         return "name: " + name + " value: " + value;
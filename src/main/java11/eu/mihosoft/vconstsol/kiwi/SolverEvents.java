@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015, Alex Birkett All rights reserved.
+ * Copyright (c) 2018-2018 Michael Hoffer <info@michaelhoffer.de>. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of kiwi-java nor the names of its
+ *   contributors may be used to endorse or promote products derived from
+ *   this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package eu.mihosoft.vconstsol.kiwi;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events of the solver.
+ * <p/>
+ * This is the implementation for Java 11 and later, which replaces the
+ * no-op implementation in {@code src/main/java} in the multi-release jar.
+ * By default, operations that take at least a millisecond are recorded and
+ * pivots are not recorded. A disabled event costs a check of its event type.
+ * The events can be configured in a JFR settings file (see
+ * {@code jfr configure}) with the names of the event types.
+ */
+final class SolverEvents {
+
+    @Name("eu.mihosoft.vconstsol.kiwi.Operation")
+    @Label("Solver Operation")
+    @Description("An operation of a constraint solver")
+    @Category({"Kiwi", "Solver"})
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static final class OperationEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Pivots")
+        @Description("The number of pivots performed by the operation")
+        long pivots;
+
+        @Label("Rows")
+        @Description("The number of basic rows of the tableau after the operation")
+        int rows;
+    }
+
+    @Name("eu.mihosoft.vconstsol.kiwi.Pivot")
+    @Label("Solver Pivot")
+    @Description("A pivot of the simplex tableau of a constraint solver")
+    @Category({"Kiwi", "Solver"})
+    @StackTrace(false)
+    @Enabled(false)
+    static final class PivotEvent extends Event {
+
+        @Label("Entering Symbol")
+        String entering;
+
+        @Label("Leaving Symbol")
+        String leaving;
+
+        @Label("Row Size")
+        @Description("The number of cells of the substituted row")
+        int rowSize;
+    }
+
+    private static final EventType OPERATION = EventType.getEventType(OperationEvent.class);
+    private static final EventType PIVOT = EventType.getEventType(PivotEvent.class);
+
+    private SolverEvents() {
+    }
+
+    static Object beginOperation(long pivots) {
+        if (!OPERATION.isEnabled()) {
+            return null;
+        }
+        OperationEvent event = new OperationEvent();
+        // the pivots are counted from here on
+        event.pivots = pivots;
+        event.begin();
+        return event;
+    }
+
+    static void endOperation(Object event, String operation, long pivots, Solver solver) {
+        if (event == null) {
+            return;
+        }
+        OperationEvent operationEvent = (OperationEvent) event;
+        operationEvent.end();
+        if (operationEvent.shouldCommit()) {
+            operationEvent.operation = operation;
+            operationEvent.pivots = pivots - operationEvent.pivots;
+            operationEvent.rows = solver.getRowCount();
+            operationEvent.commit();
+        }
+    }
+
+    static Object beginPivot() {
+        if (!PIVOT.isEnabled()) {
+            return null;
+        }
+        PivotEvent event = new PivotEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endPivot(Object event, Symbol.Type entering, Symbol.Type leaving, int rowSize) {
+        if (event == null) {
+            return;
+        }
+        PivotEvent pivotEvent = (PivotEvent) event;
+        pivotEvent.end();
+        if (pivotEvent.shouldCommit()) {
+            pivotEvent.entering = entering.name();
+            pivotEvent.leaving = leaving.name();
+            pivotEvent.rowSize = rowSize;
+            pivotEvent.commit();
+        }
+    }
+}
@@ -31,7 +31,31 @@ package eu.mihosoft.vconstsol.kiwi;
 
 import org.junit.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 public class Tests {
@@ -194,6 +218,861 @@ public class Tests {
         assertEquals(120, y.getValue(), EPSILON);
     }
 
+    @Test
+    public void addRemoveBatch() throws DuplicateConstraintException, UnsatisfiableConstraintException {
+        Variable x = new Variable("x");
+        Variable y = new Variable("y");
+        Solver solver = new Solver();
+
+        Constraint c10 = Symbolics.lessThanOrEqualTo(x, 10.0);
+        Constraint cxy = Symbolics.equals(Symbolics.multiply(x, 2.0), y);
+        Constraint cunsat = Symbolics.greaterThanOrEqualTo(x, 20.0);
+
+        solver.addConstraint(c10);
+
+        Map<Constraint, KiwiException> failures = solver.addConstraints(Arrays.asList(
+                Symbolics.equals(x, 100).setStrength(Strength.WEAK),
+                cxy,
+                c10,
+                cunsat));
+
+        assertEquals(2, failures.size());
+        assertTrue(failures.get(c10) instanceof DuplicateConstraintException);
+        assertTrue(failures.get(cunsat) instanceof UnsatisfiableConstraintException);
+
+        solver.updateVariables();
+
+        assertEquals(10, x.getValue(), EPSILON);
+        assertEquals(20, y.getValue(), EPSILON);
+
+        failures = solver.removeConstraints(Arrays.asList(c10, cxy, cunsat));
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(cunsat) instanceof UnknownConstraintException);
+
+        solver.updateVariables();
+
+        assertEquals(100, x.getValue(), EPSILON);
+    }
+
+    @Test
+    public void suggestValues() throws DuplicateConstraintException, UnsatisfiableConstraintException, DuplicateEditVariableException, RequiredFailureException, UnknownEditVariableException {
+        Variable left = new Variable("left");
+        Variable width = new Variable("width");
+        Variable right = new Variable("right");
+        Solver solver = new Solver();
+
+        solver.addConstraint(Symbolics.equals(right, Symbolics.add(left, width)));
+        solver.addConstraint(Symbolics.greaterThanOrEqualTo(width, 0.0));
+        solver.addEditVariable(left, Strength.STRONG);
+        solver.addEditVariable(width, Strength.STRONG);
+
+        solver.suggestValues(new Variable[]{left, width}, new double[]{10, 50});
+
+        assertEquals(10, left.getValue(), EPSILON);
+        assertEquals(50, width.getValue(), EPSILON);
+        assertEquals(60, right.getValue(), EPSILON);
+
+        solver.beginEdit();
+        solver.suggestValue(left, 20);
+        solver.suggestValue(width, -30);
+        solver.commitEdit();
+
+        assertEquals(20, left.getValue(), EPSILON);
+        assertEquals(0, width.getValue(), EPSILON);
+        assertEquals(20, right.getValue(), EPSILON);
+    }
+
+    @Test
+    public void updateVariablesReportsChanges() throws DuplicateConstraintException, UnsatisfiableConstraintException, DuplicateEditVariableException, RequiredFailureException, UnknownEditVariableException {
+        Variable x = new Variable("x");
+        Variable y = new Variable("y");
+        Variable z = new Variable("z");
+        Solver solver = new Solver();
+
+        solver.addConstraint(Symbolics.equals(y, Symbolics.add(x, 10)));
+        solver.addConstraint(Symbolics.equals(z, 5));
+        solver.addEditVariable(x, Strength.STRONG);
+
+        List<Variable> changed = solver.updateVariables();
+
+        assertEquals(2, changed.size());
+        assertTrue(changed.contains(y));
+        assertTrue(changed.contains(z));
+
+        solver.suggestValue(x, 20);
+        changed = solver.updateVariables();
+
+        assertEquals(2, changed.size());
+        assertTrue(changed.contains(x));
+        assertTrue(changed.contains(y));
+        assertEquals(30, y.getValue(), EPSILON);
+
+        solver.suggestValue(x, 20);
+
+        assertTrue(solver.updateVariables().isEmpty());
+    }
+
+    @Test
+    public void fork() throws DuplicateConstraintException, UnsatisfiableConstraintException, UnknownConstraintException, DuplicateEditVariableException, RequiredFailureException, UnknownEditVariableException {
+        Variable x = new Variable("x");
+        Variable y = new Variable("y");
+        Solver solver = new Solver();
+
+        Constraint xMin = Symbolics.greaterThanOrEqualTo(x, 10);
+        solver.addConstraint(xMin);
+        solver.addConstraint(Symbolics.equals(y, Symbolics.multiply(x, 2)));
+        solver.addEditVariable(x, Strength.STRONG);
+        solver.suggestValue(x, 20);
+
+        Solver fork = solver.fork();
+
+        fork.suggestValue(x, 50);
+        fork.addConstraint(Symbolics.lessThanOrEqualTo(x, 40));
+
+        assertEquals(40, fork.valueOf(x), EPSILON);
+        assertEquals(80, fork.valueOf(y), EPSILON);
+        assertEquals(20, solver.valueOf(x), EPSILON);
+        assertEquals(40, solver.valueOf(y), EPSILON);
+
+        solver.removeConstraint(xMin);
+        solver.suggestValue(x, 5);
+        solver.updateVariables();
+
+        assertEquals(5, x.getValue(), EPSILON);
+        assertEquals(10, y.getValue(), EPSILON);
+        assertEquals(40, fork.valueOf(x), EPSILON);
+        assertTrue(fork.hasConstraint(xMin));
+    }
+
+    @Test
+    public void variablesOfSolversOnSeveralThreads() throws Exception {
+        Variable[] x = new Variable[500];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = new Variable("x" + i);
+        }
+
+        // the solvers register the same variables at the same time
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger wrong = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t * 1000;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    Solver solver = new Solver();
+                    for (int round = 0; round < 3; round++) {
+                        for (int i = 0; i < x.length; i++) {
+                            solver.addConstraint(Symbolics.equals(x[i], offset + i));
+                        }
+                        for (int i = 0; i < x.length; i++) {
+                            if (Math.abs(solver.valueOf(x[i]) - (offset + i)) > EPSILON) {
+                                wrong.incrementAndGet();
+                            }
+                        }
+                        solver.reset();
+                    }
+                } catch (Exception e) {
+                    wrong.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, wrong.get());
+
+        // a fork keeps the indices that its solver releases on reset
+        Solver solver = new Solver();
+        solver.addConstraint(Symbolics.equals(x[0], 1));
+        Solver fork = solver.fork();
+        solver.reset();
+        Solver other = new Solver();
+        other.addConstraint(Symbolics.equals(x[1], 2));
+        other.addConstraint(Symbolics.equals(x[0], 3));
+        assertEquals(1, fork.valueOf(x[0]), EPSILON);
+        assertEquals(3, other.valueOf(x[0]), EPSILON);
+    }
+
+    @Test
+    public void template() throws Exception {
+        Variable pageWidth = new Variable("pageWidth");
+        Variable left = new Variable("left");
+        Variable width = new Variable("width");
+        Solver solver = new Solver();
+
+        solver.addConstraint(Symbolics.greaterThanOrEqualTo(left, 10));
+        solver.addConstraint(Symbolics.equals(Symbolics.add(left, width), Symbolics.subtract(pageWidth, 10)));
+        solver.addConstraint(Symbolics.equals(left, 20).setStrength(Strength.WEAK));
+        solver.addEditVariable(pageWidth, Strength.STRONG);
+        solver.suggestValue(pageWidth, 100);
+
+        SolverTemplate template = SolverTemplate.compile(solver);
+        assertEquals(pageWidth, template.getParameter("pageWidth"));
+
+        Solver a4 = template.instantiate(Collections.singletonMap(pageWidth, 210.0));
+        Solver letter = template.instantiate();
+        letter.suggestValue(pageWidth, 216);
+        letter.addConstraint(Symbolics.lessThanOrEqualTo(width, 150));
+
+        assertEquals(20, a4.valueOf(left), EPSILON);
+        assertEquals(180, a4.valueOf(width), EPSILON);
+        assertEquals(56, letter.valueOf(left), EPSILON);
+        assertEquals(150, letter.valueOf(width), EPSILON);
+        assertEquals(70, template.instantiate().valueOf(width), EPSILON);
+        assertEquals(70, solver.valueOf(width), EPSILON);
+    }
+
+    @Test
+    public void templateParametersWithEqualNames() throws Exception {
+        Variable first = new Variable("width");
+        Variable second = new Variable("width");
+        Variable height = new Variable("height");
+        Solver solver = new Solver();
+        solver.addConstraint(Symbolics.equals(height, Symbolics.add(first, second)));
+        solver.addEditVariable(first, Strength.STRONG);
+        solver.addEditVariable(second, Strength.STRONG);
+
+        SolverTemplate template = SolverTemplate.compile(solver);
+        assertEquals(Arrays.asList(first, second), template.getParameters());
+        assertNull(template.getParameter("height"));
+        try {
+            template.getParameter("width");
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // both parameters are named width
+        }
+
+        Map<Variable, Double> values = new HashMap<>();
+        values.put(first, 3.0);
+        values.put(second, 4.0);
+        assertEquals(7, template.instantiate(values).valueOf(height), EPSILON);
+    }
+
+    @Test
+    public void reset() throws Exception {
+        Variable left = new Variable("left");
+        Variable width = new Variable("width");
+        Variable right = new Variable("right");
+        Constraint minLeft = Symbolics.greaterThanOrEqualTo(left, 10);
+        Constraint sum = Symbolics.equals(Symbolics.add(left, width), right);
+        Solver solver = new Solver(3, 5);
+        Solver fork = null;
+
+        for (int frame = 0; frame < 5; frame++) {
+            solver.reset();
+            assertFalse(solver.hasConstraint(sum));
+
+            solver.addConstraint(minLeft);
+            solver.addConstraint(sum);
+            solver.addConstraint(Symbolics.equals(right, 100 + frame));
+            solver.addConstraint(Symbolics.equals(left, 0).setStrength(Strength.MEDIUM));
+            solver.addConstraint(Symbolics.equals(width, 50).setStrength(Strength.WEAK));
+            solver.updateVariables();
+
+            assertEquals(10, left.getValue(), EPSILON);
+            assertEquals(90 + frame, width.getValue(), EPSILON);
+            if (frame == 2) {
+                fork = solver.fork();
+            }
+        }
+
+        // the fork is not affected by resetting the solver it was forked from
+        assertEquals(92, fork.valueOf(width), EPSILON);
+        fork.removeConstraint(minLeft);
+        assertEquals(102, fork.valueOf(width), EPSILON);
+    }
+
+    @Test
+    public void resetAfterFork() throws Exception {
+        Variable x = new Variable("x");
+        Variable y = new Variable("y");
+        Solver solver = new Solver();
+        solver.addConstraint(Symbolics.equals(x, 1));
+        Solver fork = solver.fork();
+
+        // the first reset keeps the indices which the fork relies on
+        solver.reset();
+        solver.addConstraint(Symbolics.equals(y, 2));
+        assertTrue(solver.ownsIndex(y, 0));
+        solver.reset();
+
+        // the second reset recycles the indices of the variables added since
+        solver.addConstraint(Symbolics.equals(y, 3));
+        assertTrue(solver.ownsIndex(y, 0));
+        assertEquals(3, solver.valueOf(y), EPSILON);
+        assertEquals(1, fork.valueOf(x), EPSILON);
+    }
+
+    @Test
+    public void expressionBuilder() throws Exception {
+        Variable[] columns = new Variable[200];
+        ExpressionBuilder builder = new ExpressionBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Variable("column" + i);
+            builder.add(columns[i], 2).subtract(columns[i / 2]);
+        }
+        assertEquals(200, builder.size());
+        assertEquals(0, builder.coefficientFor(columns[0]), EPSILON);
+        assertEquals(0, builder.coefficientFor(columns[1]), EPSILON);
+        assertEquals(2, builder.coefficientFor(columns[100]), EPSILON);
+
+        Variable total = new Variable("total");
+        Solver solver = new Solver();
+        for (Variable column : columns) {
+            solver.addConstraint(Symbolics.equals(column, 1));
+        }
+        solver.addConstraint(builder.clear().add(columns[0]).add(columns[1], 3).add(columns[0]).subtract(total)
+                .multiply(2).add(10).buildConstraint(RelationalOperator.OP_EQ));
+        assertEquals(3, builder.size());
+        assertEquals(10, builder.getConstant(), EPSILON);
+
+        assertEquals(10, solver.valueOf(total), EPSILON);
+    }
+
+    @Test
+    public void constraintLoader() throws Exception {
+        Path file = Files.createTempFile("constraints", ".txt");
+        try {
+            StringBuilder text = new StringBuilder("# a chain of boxes\nbox0.left == 10\n");
+            for (int i = 1; i < 1000; i++) {
+                text.append("box").append(i).append(".left == box").append(i - 1).append(".left + 2 * gap\n");
+            }
+            text.append("\ngap >= 5\ngap == 100 !weak\n");
+            Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+
+            ConstraintParser.InterningResolver resolver = new ConstraintParser.InterningResolver();
+            ConstraintLoader loader = new ConstraintLoader(resolver);
+            Solver solver = new Solver();
+
+            assertTrue(loader.load(file, solver).isEmpty());
+            assertEquals(1001, resolver.getVariables().size());
+            assertEquals(10 + 999 * 200, solver.valueOf(resolver.resolveVariable("box999.left")), EPSILON);
+
+            Files.write(file, "x == 1\nx == y * y\n".getBytes(StandardCharsets.UTF_8));
+            try {
+                loader.parse(file);
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(":2: "));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void pricingRules() throws DuplicateConstraintException, UnsatisfiableConstraintException, UnknownConstraintException {
+        Variable left = new Variable("left");
+        Variable width = new Variable("width");
+        Variable right = new Variable("right");
+
+        for (PricingRule rule : PricingRule.values()) {
+            Solver solver = new Solver();
+            solver.setPricingRule(rule);
+
+            solver.addConstraint(Symbolics.equals(right, Symbolics.add(left, width)));
+            solver.addConstraint(Symbolics.greaterThanOrEqualTo(left, 0));
+            solver.addConstraint(Symbolics.lessThanOrEqualTo(right, 500));
+            solver.addConstraint(Symbolics.greaterThanOrEqualTo(width, 100));
+            solver.addConstraint(Symbolics.equals(width, 300).setStrength(Strength.WEAK));
+            solver.addConstraint(Symbolics.equals(left, 50).setStrength(Strength.MEDIUM));
+            Constraint rightAt = Symbolics.equals(right, 250).setStrength(Strength.STRONG);
+            solver.addConstraint(rightAt);
+            solver.updateVariables();
+
+            assertEquals(rule.name(), 50, left.getValue(), EPSILON);
+            assertEquals(rule.name(), 200, width.getValue(), EPSILON);
+
+            solver.removeConstraint(rightAt);
+            solver.updateVariables();
+
+            assertEquals(rule.name(), 50, left.getValue(), EPSILON);
+            assertEquals(rule.name(), 300, width.getValue(), EPSILON);
+        }
+    }
+
+    @Test
+    public void offHeapStorage() throws Exception {
+        Variable[] x = new Variable[50];
+        Solver onHeap = new Solver();
+        Solver offHeap = new Solver();
+        OffHeapStorage storage = new OffHeapStorage(1024);
+        offHeap.setOffHeapStorage(storage);
+
+        for (Solver solver : Arrays.asList(onHeap, offHeap)) {
+            Expression total = new Expression();
+            for (int i = 0; i < x.length; i++) {
+                if (x[i] == null) {
+                    x[i] = new Variable("x" + i);
+                }
+                solver.addConstraint(Symbolics.greaterThanOrEqualTo(x[i], 1));
+                solver.addConstraint(Symbolics.equals(x[i], 10 + i % 5).setStrength(Strength.WEAK));
+                total = Symbolics.add(total, x[i]);
+            }
+            // the row of the total grows beyond the chunks of the storage
+            solver.addConstraint(Symbolics.lessThanOrEqualTo(total, 400));
+            solver.addEditVariable(x[0], Strength.STRONG);
+            solver.suggestValue(x[0], 100);
+        }
+        assertTrue(storage.getUsedBytes() > 0);
+        assertTrue(storage.getReservedBytes() >= storage.getUsedBytes());
+
+        Solver fork = offHeap.fork();
+        fork.suggestValue(x[0], 50);
+        for (Variable variable : x) {
+            assertEquals(onHeap.valueOf(variable), offHeap.valueOf(variable), EPSILON);
+        }
+        assertEquals(50, fork.valueOf(x[0]), EPSILON);
+        assertEquals(100, offHeap.valueOf(x[0]), EPSILON);
+
+        storage.close();
+        assertEquals(0, storage.getReservedBytes());
+        try {
+            fork.suggestValue(x[0], 10);
+            fail("the storage has been closed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void rowOfClosedOffHeapStorage() {
+        OffHeapStorage storage = new OffHeapStorage();
+        Symbol symbol = new Symbol(Symbol.Type.SLACK, 0);
+        Row row = new Row(1, storage);
+        row.insert(symbol, 2);
+        assertEquals(2, row.coefficientFor(symbol), EPSILON);
+
+        // the memory of the row has been freed
+        storage.close();
+        assertEquals(1, row.getConstant(), EPSILON);
+        try {
+            row.coefficientFor(symbol);
+            fail("the storage has been closed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void denseRows() {
+        Symbol[] symbols = new Symbol[100];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = new Symbol(Symbol.Type.SLACK, i);
+        }
+
+        Row a = new Row(1);
+        Row b = new Row(2);
+        for (int i = 0; i < 64; i++) {
+            a.insert(symbols[i], i + 1);
+            b.insert(symbols[i + 32], 1);
+        }
+        assertTrue(a.isDense());
+        assertTrue(b.isDense());
+
+        // cells of a that cancel out are removed, the others are added
+        b.insert(symbols[10], -0.5);
+        a.insert(symbols[99], 2);
+        a.substitute(symbols[99], b);
+        assertEquals(5, a.getConstant(), EPSILON);
+        assertEquals(96, a.size());
+        for (int i = 0; i < 96; i++) {
+            double expected = (i < 64 ? i + 1 : 0) + (i >= 32 ? 2 : 0) + (i == 10 ? -1 : 0);
+            assertEquals(expected, a.coefficientFor(symbols[i]), EPSILON);
+        }
+        assertEquals(0, a.coefficientFor(symbols[99]), EPSILON);
+
+        a.insert(b, -2);
+        assertEquals(1, a.getConstant(), EPSILON);
+        assertEquals(64, a.size());
+        assertEquals(11, a.coefficientFor(symbols[10]), EPSILON);
+        assertEquals(0, a.coefficientFor(symbols[64]), EPSILON);
+
+        // the row becomes sparse again once most of its cells are removed
+        for (int i = 1; i < 62; i++) {
+            a.remove(symbols[i]);
+        }
+        assertFalse(a.isDense());
+        assertEquals(3, a.size());
+        assertEquals(1, a.coefficientFor(symbols[0]), EPSILON);
+        assertEquals(63, a.coefficientFor(symbols[62]), EPSILON);
+        assertEquals(64, a.coefficientFor(symbols[63]), EPSILON);
+    }
+
+    @Test
+    public void removedCellsKeepInsertionOrder() {
+        Symbol[] symbols = new Symbol[64];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = new Symbol(Symbol.Type.SLACK, i);
+        }
+
+        for (int n : new int[]{5, 64}) {
+            Row row = new Row();
+            for (int i = 0; i < n; i++) {
+                row.insert(symbols[i], i + 1);
+            }
+            assertEquals(n == 64, row.isDense());
+
+            row.remove(symbols[1]);
+            row.insert(symbols[2], -3);
+            row.insert(symbols[1], 7);
+            assertEquals(n - 1, row.size());
+            assertTrue(row.symbolAt(0) == symbols[0]);
+            for (int i = 1; i < n - 2; i++) {
+                assertTrue(row.symbolAt(i) == symbols[i + 2]);
+                assertEquals(i + 3, row.coefficientAt(i), EPSILON);
+            }
+            assertTrue(row.symbolAt(n - 2) == symbols[1]);
+            assertEquals(7, row.coefficientFor(symbols[1]), EPSILON);
+        }
+    }
+
+    @Test
+    public void strongEqualitiesWithFirstNegativePricing() throws KiwiException {
+        // the entering symbol is the first negative cell of the objective,
+        // which has to be taken in insertion order to find a leaving row
+        Variable[] v = new Variable[7];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = new Variable("v" + i);
+        }
+        Solver solver = new Solver();
+
+        solver.addConstraint(constraint(-1, RelationalOperator.OP_GE, Strength.STRONG, term(v[3], 0), term(v[2], -3), term(v[1], 1)));
+        solver.addConstraint(constraint(-2, RelationalOperator.OP_GE, Strength.STRONG, term(v[1], 4), term(v[4], -2)));
+        solver.addConstraint(constraint(-3, RelationalOperator.OP_LE, Strength.MEDIUM, term(v[3], 2), term(v[1], -3), term(v[6], -3)));
+        solver.addConstraint(constraint(0, RelationalOperator.OP_LE, Strength.STRONG, term(v[2], 1), term(v[3], 3), term(v[6], 0)));
+        solver.addConstraint(constraint(16, RelationalOperator.OP_LE, Strength.STRONG, term(v[4], -2), term(v[0], 0), term(v[6], -3)));
+        solver.addConstraint(constraint(11, RelationalOperator.OP_LE, Strength.REQUIRED, term(v[6], -1)));
+        solver.addConstraint(constraint(7, RelationalOperator.OP_EQ, Strength.REQUIRED, term(v[6], -3), term(v[3], -1)));
+        solver.addConstraint(constraint(8, RelationalOperator.OP_EQ, Strength.STRONG, term(v[4], 3), term(v[1], 2), term(v[6], -3)));
+
+        solver.updateVariables();
+        assertEquals(25.25, v[1].getValue(), EPSILON);
+        assertEquals(-26, v[3].getValue(), EPSILON);
+        assertEquals(11, v[6].getValue(), EPSILON);
+    }
+
+    @Test
+    public void dragWithoutAllocation() throws Exception {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+
+        Variable[] x = new Variable[100];
+        Solver solver = new Solver();
+        for (int i = 0; i < x.length; i++) {
+            x[i] = new Variable("x" + i);
+            solver.addConstraint(Symbolics.lessThanOrEqualTo(x[i], 5000));
+            solver.addConstraint(Symbolics.equals(x[i], i * 20).setStrength(Strength.WEAK));
+            if (i > 0) {
+                solver.addConstraint(Symbolics.greaterThanOrEqualTo(x[i], Symbolics.add(x[i - 1], 10)));
+            }
+        }
+        Variable dragged = x[50];
+        solver.addEditVariable(dragged, Strength.STRONG);
+
+        // the first sweeps grow the rows and columns of the tableau, the
+        // following ones may still be disturbed by class loading
+        long thread = Thread.currentThread().getId();
+        long allocated = -1;
+        for (int sweep = 0; sweep < 10 && allocated != 0; sweep++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 400; i++) {
+                solver.suggestValue(dragged, i < 200 ? 10 * i : 4000 - 10 * i);
+                solver.updateVariables();
+            }
+            allocated = threads.getThreadAllocatedBytes(thread) - before;
+        }
+
+        assertEquals("bytes allocated by a sweep", 0, allocated);
+        assertEquals(10, dragged.getValue(), EPSILON);
+        assertEquals(0, x[49].getValue(), EPSILON);
+    }
+
+    @Test
+    public void budget() throws Exception {
+        Variable left = new Variable("left");
+        Variable width = new Variable("width");
+        Variable right = new Variable("right");
+
+        Solver solver = new Solver();
+        solver.setForkJoinPool(null);
+        solver.addConstraint(Symbolics.equals(right, Symbolics.add(left, width)));
+        solver.addConstraint(Symbolics.greaterThanOrEqualTo(left, 0));
+        solver.addConstraint(Symbolics.greaterThanOrEqualTo(width, 100));
+        solver.addConstraint(Symbolics.equals(width, 300).setStrength(Strength.WEAK));
+        solver.addConstraint(Symbolics.equals(left, 50).setStrength(Strength.MEDIUM));
+
+        Constraint rightAt = Symbolics.equals(right, 250).setStrength(Strength.STRONG);
+        Budget budget = Budget.ofPivots(0);
+        assertFalse(solver.addConstraint(rightAt, budget));
+        assertTrue(budget.isExhausted());
+        assertFalse(solver.isOptimal());
+
+        assertTrue(solver.resume(Budget.unlimited()));
+        solver.updateVariables();
+        assertEquals(50, left.getValue(), EPSILON);
+        assertEquals(200, width.getValue(), EPSILON);
+
+        solver.removeConstraint(rightAt);
+        solver.addEditVariable(right, Strength.STRONG);
+        Budget cancelled = Budget.unlimited();
+        cancelled.cancel();
+        assertFalse(solver.suggestValue(right, 120, cancelled));
+
+        // the next operation without budget completes the stopped work
+        solver.addConstraint(Symbolics.lessThanOrEqualTo(left, 1000));
+        assertTrue(solver.isOptimal());
+        solver.updateVariables();
+        assertEquals(20, left.getValue(), EPSILON);
+        assertEquals(100, width.getValue(), EPSILON);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(solver.suggestValue(right, 400, Budget.unlimited()));
+        } finally {
+            Thread.interrupted();
+        }
+        assertTrue(solver.resume(Budget.ofTime(1, TimeUnit.MINUTES)));
+        solver.updateVariables();
+        assertEquals(50, left.getValue(), EPSILON);
+        assertEquals(350, width.getValue(), EPSILON);
+    }
+
+    @Test
+    public void addAfterRejectedConstraint() throws Exception {
+        // a rejected required constraint may leave infeasible rows behind,
+        // which the next constraint must not try to pivot away
+        Variable x = new Variable("x");
+        Variable y = new Variable("y");
+        Variable z = new Variable("z");
+        Solver solver = new Solver();
+        solver.addConstraint(Symbolics.lessThanOrEqualTo(x, -3));
+        solver.addConstraint(Symbolics.lessThanOrEqualTo(x, -4));
+        try {
+            solver.addConstraint(Symbolics.equals(x, -1));
+            fail("the constraint cannot be satisfied");
+        } catch (UnsatisfiableConstraintException e) {
+            // expected
+        }
+
+        Expression sum = Symbolics.add(Symbolics.multiply(y, 2), z);
+        solver.addConstraint(Symbolics.lessThanOrEqualTo(sum, 4).setStrength(Strength.WEAK));
+        solver.updateVariables();
+        assertTrue(2 * y.getValue() + z.getValue() <= 4 + EPSILON);
+    }
+
+    @Test
+    public void stats() throws Exception {
+        Variable x = new Variable("x");
+        Variable y = new Variable("y");
+        Solver solver = new Solver();
+        assertTrue(solver.getStats() == null);
+
+        solver.setStatsEnabled(true);
+        SolverStats stats = solver.getStats();
+
+        solver.addConstraint(Symbolics.greaterThanOrEqualTo(x, 10));
+        solver.addConstraint(Symbolics.equals(y, Symbolics.multiply(x, 2)));
+        solver.addEditVariable(x, Strength.STRONG);
+        solver.suggestValue(x, 20);
+        solver.suggestValue(x, 0);
+        solver.updateVariables();
+
+        assertEquals(10, x.getValue(), EPSILON);
+        // the constraint of the edit variable is not counted separately
+        assertEquals(2, stats.getCount(SolverStats.Operation.ADD_CONSTRAINT));
+        assertEquals(1, stats.getCount(SolverStats.Operation.ADD_EDIT_VARIABLE));
+        assertEquals(2, stats.getCount(SolverStats.Operation.SUGGEST_VALUE));
+        assertEquals(1, stats.getCount(SolverStats.Operation.UPDATE_VARIABLES));
+        assertTrue(stats.getNanos(SolverStats.Operation.ADD_CONSTRAINT) > 0);
+        assertTrue(stats.getInfeasibleRows() > 0);
+        assertTrue(stats.getDualPivots() > 0);
+        assertTrue(stats.getSubstitutions() > 0);
+        assertEquals(3, stats.getRowCount());
+        assertEquals(5, stats.getNonZeroCount());
+
+        ObjectName name = stats.registerMBean("stats test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(stats.getDualPivots(), server.getAttribute(name, "DualPivots"));
+            assertEquals(3, server.getAttribute(name, "RowCount"));
+        } finally {
+            stats.unregisterMBean();
+        }
+
+        solver.setStatsEnabled(false);
+        assertTrue(solver.getStats() == null);
+    }
+
+    @Test
+    public void independentComponents() throws DuplicateEditVariableException, RequiredFailureException, UnknownEditVariableException {
+        int count = 8;
+        Variable[] lefts = new Variable[count];
+        Variable[] rights = new Variable[count];
+        List<Constraint> constraints = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lefts[i] = new Variable("left" + i);
+            rights[i] = new Variable("right" + i);
+            constraints.add(Symbolics.equals(rights[i], Symbolics.add(lefts[i], 10 * i)));
+            constraints.add(Symbolics.greaterThanOrEqualTo(lefts[i], i));
+        }
+
+        Solver solver = new Solver();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        solver.setForkJoinPool(pool);
+
+        assertTrue(solver.addConstraints(constraints).isEmpty());
+
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            solver.addEditVariable(lefts[i], Strength.STRONG);
+            values[i] = 100 + i;
+        }
+        solver.suggestValues(lefts, values);
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(100 + i, lefts[i].getValue(), EPSILON);
+            assertEquals(100 + 11 * i, rights[i].getValue(), EPSILON);
+        }
+
+        pool.shutdown();
+    }
+
+    @Test
+    public void concurrentSolver() throws Exception {
+        Variable x = new Variable("x");
+        Variable y = new Variable("y");
+
+        try (ConcurrentSolver solver = new ConcurrentSolver()) {
+            solver.addConstraint(Symbolics.equals(y, Symbolics.add(x, 10)));
+            solver.addEditVariable(x, Strength.STRONG).get();
+
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger inconsistent = new AtomicInteger();
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    ConcurrentSolver.Snapshot snapshot = solver.snapshot();
+                    if (Math.abs(snapshot.valueOf(y) - snapshot.valueOf(x) - 10) > EPSILON) {
+                        inconsistent.incrementAndGet();
+                    }
+                }
+            });
+            reader.start();
+
+            CompletableFuture<Void> last = null;
+            for (int i = 0; i < 1000; i++) {
+                last = solver.suggestValue(x, i);
+            }
+            last.get();
+            done.set(true);
+            reader.join();
+
+            assertEquals(0, inconsistent.get());
+            assertEquals(999, solver.snapshot().valueOf(x), EPSILON);
+            assertEquals(1009, solver.snapshot().valueOf(y), EPSILON);
+            assertEquals(0, x.getValue(), EPSILON);
+        }
+    }
+
+    @Test
+    public void concurrentSolverOptimizationFailure() throws Exception {
+        AtomicBoolean fail = new AtomicBoolean();
+        Solver failing = new Solver() {
+            @Override
+            void endEdit() {
+                super.endEdit();
+                if (fail.get()) {
+                    throw new IllegalStateException("optimization failed");
+                }
+            }
+        };
+        Variable x = new Variable("x");
+
+        try (ConcurrentSolver solver = new ConcurrentSolver(failing)) {
+            // the writer is blocked until the next batch has been queued
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch queued = new CountDownLatch(1);
+            CompletableFuture<Void> blocker = solver.submit(s -> {
+                started.countDown();
+                queued.await();
+                return null;
+            });
+            started.await();
+            solver.submit(s -> {
+                fail.set(true);
+                return null;
+            });
+            CompletableFuture<Void> added = solver.addConstraint(Symbolics.equals(x, 10));
+            CompletableFuture<Void> unknown = solver.removeEditVariable(x);
+            queued.countDown();
+            blocker.get();
+
+            try {
+                added.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof UnoptimizedChangeException);
+                assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+            }
+            try {
+                unknown.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof UnknownEditVariableException);
+            }
+
+            ConcurrentSolver.Snapshot snapshot = solver.snapshot();
+            assertFalse(snapshot.isOptimized());
+            assertEquals(10, snapshot.valueOf(x), EPSILON);
+
+            // the next batch continues from the applied changes
+            fail.set(false);
+            solver.addConstraint(Symbolics.greaterThanOrEqualTo(x, 0)).get();
+            snapshot = solver.snapshot();
+            assertTrue(snapshot.isOptimized());
+            assertEquals(10, snapshot.valueOf(x), EPSILON);
+        }
+    }
+
+    @Test
+    public void removeNonRequiredEquality() throws KiwiException {
+        // both error symbols of a non-required equality are weighted in the
+        // objective, hence both weights have to be removed with it
+        Variable x = new Variable("x");
+        Solver solver = new Solver();
+
+        Constraint equality = Symbolics.equals(x, 10).setStrength(Strength.STRONG);
+        solver.addConstraint(equality);
+        solver.updateVariables();
+        assertEquals(10, x.getValue(), EPSILON);
+
+        solver.removeConstraint(equality);
+        Row objective = solver.getObjective(x);
+        assertEquals(0, objective.size());
+        assertEquals(0, objective.getConstant(), EPSILON);
+
+        solver.addConstraint(Symbolics.equals(x, -5).setStrength(Strength.WEAK));
+        solver.updateVariables();
+        assertEquals(-5, x.getValue(), EPSILON);
+    }
+
+    private static Term term(Variable variable, double coefficient) {
+        return new Term(variable, coefficient);
+    }
+
+    private static Constraint constraint(double constant, RelationalOperator op, double strength, Term... terms) {
+        return new Constraint(new Expression(Arrays.asList(terms), constant), op, strength);
+    }
+
     @Test(expected = UnsatisfiableConstraintException.class)
     public void inconsistent1() throws InternalError, DuplicateConstraintException, UnsatisfiableConstraintException {
         Variable x = new Variable("x");